@@ -0,0 +1,171 @@
+package ru.liga.book.batch;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.util.StringUtils;
+import ru.liga.book.model.Book;
+import ru.liga.book.model.BookCsv;
+import ru.liga.book.util.Isbn;
+import ru.liga.book.util.Ratings;
+
+/**
+ * Переводит строку CSV в книгу без Optional и повторного разбора уже типизированных чисел.
+ * Отсутствующие числа заменяются нулём, нечисловые (NaN, бесконечность) - тоже нулём,
+ * но учитываются в контексте шага вместо записи стектрейса в лог.
+ * ISBN нормализуются ({@link Isbn}): недостающий ISBN-10 или ISBN-13 выводится из другого,
+ * неразборчивые ISBN обнуляются, повторный ISBN-13 остаётся только у первой книги ({@link IsbnClaims}).
+ * Число, сумма и среднее оценок выводятся из гистограммы ratings_1..ratings_5 ({@link Ratings}),
+ * чтобы их можно было согласованно менять при изменении отзывов; без гистограммы берутся ratings_count
+ * и average_rating из файла. Каждой книге проставляется row_hash; при дельта-импорте неизменённые книги отфильтровываются.
+ * <p>
+ * Бин в step scope: у каждого шага (и каждой партиции) свой экземпляр и свои счётчики.
+ */
+public class BookCsvProcessor implements ItemProcessor<BookCsv, Book>, StepExecutionListener {
+
+    public static final String INVALID_NUMBERS = "invalidNumbers";
+    public static final String MISSING_NUMBERS = "missingNumbers";
+    public static final String UNCHANGED_ROWS = "unchangedRows";
+    public static final String INVALID_ISBNS = "invalidIsbns";
+    public static final String DUPLICATE_ISBNS = "duplicateIsbns";
+
+    private static final Logger log = LoggerFactory.getLogger(BookCsvProcessor.class);
+
+    private static final Double ZERO = 0.0;
+    private static final Integer ZERO_COUNT = 0;
+
+    private final DeltaState deltaState;
+
+    private final IsbnClaims isbnClaims;
+
+    private long invalidNumbers;
+
+    private long missingNumbers;
+
+    private long unchanged;
+
+    private long invalidIsbns;
+
+    private long duplicateIsbns;
+
+    public BookCsvProcessor() {
+        this(null, null);
+    }
+
+    /**
+     * @param deltaState не null - книги с тем же хешем, что в базе, отфильтровываются
+     * @param isbnClaims не null - повторные ISBN-13 обнуляются
+     */
+    public BookCsvProcessor(DeltaState deltaState, IsbnClaims isbnClaims) {
+        this.deltaState = deltaState;
+        this.isbnClaims = isbnClaims;
+    }
+
+    @Override
+    public Book process(@NonNull BookCsv bookCsv) {
+        String isbn10 = Isbn.normalize10(bookCsv.getIsbn());
+        Long isbn13 = Isbn.toIsbn13(bookCsv.getIsbn13());
+        if (isbn13 == null && isbn10 != null) {
+            isbn13 = Isbn.fromIsbn10(isbn10);
+        }
+        if (isbn10 == null && isbn13 != null) {
+            isbn10 = Isbn.toIsbn10(isbn13);
+        }
+        if (isbn13 == null && (isbnText(bookCsv.getIsbn()) || isbnText(bookCsv.getIsbn13()))) {
+            invalidIsbns++;
+        }
+        if (isbn13 != null && isbnClaims != null && !isbnClaims.claim(isbn13, bookCsv.getBookId())) {
+            duplicateIsbns++;
+            isbn13 = null;
+        }
+        Book book = Book.builder()
+                .id(bookCsv.getBookId())
+                .isbn(isbn10)
+                .isbn13(isbn13)
+                .name(textOrNull(bookCsv.getAuthors()))
+                .originalPublicationYear(numberOrZero(bookCsv.getOriginalPublicationYear()))
+                .originalTitle(textOrNull(bookCsv.getOriginalTitle()))
+                .title(textOrNull(bookCsv.getTitle()))
+                .langCode(textOrNull(bookCsv.getLanguageCode()))
+                .imageUrl(textOrNull(bookCsv.getImageUrl()))
+                .smallImageUrl(textOrNull(bookCsv.getSmallImageUrl()))
+                .ratings1(countOrZero(bookCsv.getRatings1()))
+                .ratings2(countOrZero(bookCsv.getRatings2()))
+                .ratings3(countOrZero(bookCsv.getRatings3()))
+                .ratings4(countOrZero(bookCsv.getRatings4()))
+                .ratings5(countOrZero(bookCsv.getRatings5()))
+                .build();
+        Ratings.fromHistogram(book);
+        if (book.getRatingCount() == 0) {
+            book.setRatingCount(countOrZero(bookCsv.getRatingsCount()));
+            book.setRatingAvg(numberOrZero(bookCsv.getAverageRating()));
+            book.setRatingSum(Math.round(book.getRatingAvg() * book.getRatingCount()));
+        }
+        book.setRowHash(RowHashes.book(book));
+        if (deltaState != null && deltaState.books().markAndCheckUnchanged(book.getId(), book.getRowHash())) {
+            unchanged++;
+            return null;
+        }
+        return book;
+    }
+
+    @Override
+    public void beforeStep(@NonNull StepExecution stepExecution) {
+        invalidNumbers = 0;
+        missingNumbers = 0;
+        unchanged = 0;
+        invalidIsbns = 0;
+        duplicateIsbns = 0;
+    }
+
+    @Override
+    public ExitStatus afterStep(@NonNull StepExecution stepExecution) {
+        ExecutionContext context = stepExecution.getExecutionContext();
+        context.putLong(INVALID_NUMBERS, invalidNumbers);
+        context.putLong(MISSING_NUMBERS, missingNumbers);
+        context.putLong(UNCHANGED_ROWS, unchanged);
+        context.putLong(INVALID_ISBNS, invalidIsbns);
+        context.putLong(DUPLICATE_ISBNS, duplicateIsbns);
+        if (invalidNumbers > 0) {
+            log.warn("Step {}: {} invalid numbers replaced with 0", stepExecution.getStepName(), invalidNumbers);
+        }
+        if (invalidIsbns > 0 || duplicateIsbns > 0) {
+            log.warn("Step {}: {} invalid and {} duplicate ISBNs cleared", stepExecution.getStepName(),
+                    invalidIsbns, duplicateIsbns);
+        }
+        return stepExecution.getExitStatus();
+    }
+
+    private static String textOrNull(String value) {
+        return StringUtils.hasText(value) ? value : null;
+    }
+
+    private static boolean isbnText(String value) {
+        return StringUtils.hasText(value) && !"null".equalsIgnoreCase(value.trim());
+    }
+
+    private Double numberOrZero(Double value) {
+        if (value == null) {
+            missingNumbers++;
+            return ZERO;
+        }
+        if (!Double.isFinite(value)) {
+            invalidNumbers++;
+            return ZERO;
+        }
+        return value;
+    }
+
+    private Integer countOrZero(Integer value) {
+        if (value == null) {
+            missingNumbers++;
+            return ZERO_COUNT;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,318 @@
+package ru.liga.book.batch;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Для каждой книги {@link RatingMatrix} находит k ближайших соседей по косинусу и по Жаккару.
+ * Кандидаты - только книги с общими читателями: строка книги проходится по транспонированной матрице,
+ * скалярные произведения и число общих читателей копятся в массивах размером с число книг.
+ * Книги делятся на диапазоны, которые считаются параллельно в {@link ForkJoinPool}.
+ * <p>
+ * Читатели, оценившие больше maxUserRatings книг, не учитываются: их вклад в работу квадратичен,
+ * а о сходстве книг они почти ничего не говорят.
+ */
+public class BookNeighbourSearch {
+
+    /**
+     * Книг в одной задаче; меньше - больше накладных расходов на задачи, больше - хуже балансировка
+     */
+    private static final int BOOKS_PER_TASK = 64;
+
+    private final RatingMatrix matrix;
+
+    private final int k;
+
+    private final int minCommonUsers;
+
+    private final int maxUserRatings;
+
+    private final double[] norms;
+
+    private final int[] counts;
+
+    private final Neighbours cosine;
+
+    private final Neighbours jaccard;
+
+    /**
+     * Рабочие массивы размером с число книг - по одному набору на поток пула, а не на задачу
+     */
+    private final ThreadLocal<Scratch> scratch;
+
+    /**
+     * @param k              соседей на книгу
+     * @param minCommonUsers сколько общих читателей нужно, чтобы книги считались соседями
+     * @param maxUserRatings читатели с большим числом оценок пропускаются
+     */
+    public BookNeighbourSearch(RatingMatrix matrix, int k, int minCommonUsers, int maxUserRatings) {
+        this.matrix = matrix;
+        this.k = k;
+        this.minCommonUsers = minCommonUsers;
+        this.maxUserRatings = maxUserRatings;
+        int books = matrix.bookCount();
+        this.norms = new double[books];
+        this.counts = new int[books];
+        for (int b = 0; b < books; b++) {
+            long sumOfSquares = 0;
+            for (int i = matrix.bookOffsets[b]; i < matrix.bookOffsets[b + 1]; i++) {
+                if (counted(matrix.bookUsers[i])) {
+                    sumOfSquares += matrix.bookRatings[i] * matrix.bookRatings[i];
+                    counts[b]++;
+                }
+            }
+            norms[b] = Math.sqrt(sumOfSquares);
+        }
+        this.cosine = new Neighbours(books, k);
+        this.jaccard = new Neighbours(books, k);
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(books, k));
+    }
+
+    public void run(ForkJoinPool pool) {
+        pool.invoke(new Range(0, matrix.bookCount()));
+    }
+
+    public Neighbours cosine() {
+        return cosine;
+    }
+
+    public Neighbours jaccard() {
+        return jaccard;
+    }
+
+    private boolean counted(int user) {
+        return matrix.userOffsets[user + 1] - matrix.userOffsets[user] <= maxUserRatings;
+    }
+
+    private void search(int book, Scratch local) {
+        int[] dots = local.dots;
+        int[] common = local.common;
+        int[] touched = local.touched;
+        int touchedCount = 0;
+        for (int i = matrix.bookOffsets[book]; i < matrix.bookOffsets[book + 1]; i++) {
+            int user = matrix.bookUsers[i];
+            if (!counted(user)) {
+                continue;
+            }
+            int rating = matrix.bookRatings[i];
+            for (int j = matrix.userOffsets[user]; j < matrix.userOffsets[user + 1]; j++) {
+                int other = matrix.userBooks[j];
+                if (other == book) {
+                    continue;
+                }
+                if (common[other]++ == 0) {
+                    touched[touchedCount++] = other;
+                }
+                dots[other] += rating * matrix.userRatings[j];
+            }
+        }
+
+        TopNeighbours topCosine = local.cosine;
+        TopNeighbours topJaccard = local.jaccard;
+        topCosine.clear();
+        topJaccard.clear();
+        for (int t = 0; t < touchedCount; t++) {
+            int other = touched[t];
+            int shared = common[other];
+            if (shared >= minCommonUsers) {
+                topCosine.offer(other, dots[other] / (norms[book] * norms[other]), shared);
+                topJaccard.offer(other, (double) shared / (counts[book] + counts[other] - shared), shared);
+            }
+            dots[other] = 0;
+            common[other] = 0;
+        }
+        topCosine.drainTo(cosine, book);
+        topJaccard.drainTo(jaccard, book);
+    }
+
+    private final class Range extends RecursiveAction {
+
+        private final int from;
+
+        private final int to;
+
+        private Range(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BOOKS_PER_TASK) {
+                Scratch local = scratch.get();
+                for (int book = from; book < to; book++) {
+                    search(book, local);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Range(from, middle), new Range(middle, to));
+        }
+    }
+
+    /**
+     * После каждой книги тронутые ячейки обнуляются
+     */
+    private static final class Scratch {
+
+        private final int[] dots;
+
+        private final int[] common;
+
+        private final int[] touched;
+
+        private final TopNeighbours cosine;
+
+        private final TopNeighbours jaccard;
+
+        private Scratch(int books, int k) {
+            dots = new int[books];
+            common = new int[books];
+            touched = new int[books];
+            cosine = new TopNeighbours(k);
+            jaccard = new TopNeighbours(k);
+        }
+    }
+
+    /**
+     * Соседи всех книг: у книги b ранги 0..k-1 лежат с индекса b * k, пустые места - book = -1
+     */
+    public static final class Neighbours {
+
+        private final int k;
+
+        private final int[] books;
+
+        private final double[] scores;
+
+        private final int[] commonUsers;
+
+        private Neighbours(int bookCount, int k) {
+            this.k = k;
+            this.books = new int[bookCount * k];
+            this.scores = new double[bookCount * k];
+            this.commonUsers = new int[bookCount * k];
+            Arrays.fill(books, -1);
+        }
+
+        public int k() {
+            return k;
+        }
+
+        /**
+         * @return номер книги-соседа в матрице или -1
+         */
+        public int book(int book, int rank) {
+            return books[book * k + rank];
+        }
+
+        public double score(int book, int rank) {
+            return scores[book * k + rank];
+        }
+
+        public int commonUsers(int book, int rank) {
+            return commonUsers[book * k + rank];
+        }
+    }
+
+    /**
+     * k лучших кандидатов одной книги: min-куча по score, в корне - худший из оставленных
+     */
+    private static final class TopNeighbours {
+
+        private final int[] books;
+
+        private final double[] scores;
+
+        private final int[] commonUsers;
+
+        private int size;
+
+        private TopNeighbours(int k) {
+            books = new int[k];
+            scores = new double[k];
+            commonUsers = new int[k];
+        }
+
+        private void clear() {
+            size = 0;
+        }
+
+        private void offer(int book, double score, int common) {
+            if (size < books.length) {
+                set(size, book, score, common);
+                siftUp(size++);
+            } else if (better(score, book, scores[0], books[0])) {
+                set(0, book, score, common);
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Выкладывает кандидатов от лучшего к худшему, куча при этом опустошается
+         */
+        private void drainTo(Neighbours target, int book) {
+            int base = book * target.k;
+            while (size > 0) {
+                int last = --size;
+                target.books[base + last] = books[0];
+                target.scores[base + last] = scores[0];
+                target.commonUsers[base + last] = commonUsers[0];
+                if (last > 0) {
+                    set(0, books[last], scores[last], commonUsers[last]);
+                    siftDown(0);
+                }
+            }
+        }
+
+        /**
+         * При равном score выше книга с меньшим номером, чтобы результат не зависел от порядка обхода
+         */
+        private static boolean better(double score, int book, double otherScore, int otherBook) {
+            return score > otherScore || score == otherScore && book < otherBook;
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (!better(scores[parent], books[parent], scores[index], books[index])) {
+                    return;
+                }
+                swap(index, parent);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) {
+                    return;
+                }
+                if (child + 1 < size && better(scores[child], books[child], scores[child + 1], books[child + 1])) {
+                    child++;
+                }
+                if (!better(scores[index], books[index], scores[child], books[child])) {
+                    return;
+                }
+                swap(index, child);
+                index = child;
+            }
+        }
+
+        private void set(int index, int book, double score, int common) {
+            books[index] = book;
+            scores[index] = score;
+            commonUsers[index] = common;
+        }
+
+        private void swap(int i, int j) {
+            int book = books[i];
+            double score = scores[i];
+            int common = commonUsers[i];
+            set(i, books[j], scores[j], commonUsers[j]);
+            set(j, book, score, common);
+        }
+    }
+}
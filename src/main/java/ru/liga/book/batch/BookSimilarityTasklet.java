@@ -0,0 +1,175 @@
+package ru.liga.book.batch;
+
+import lombok.NonNull;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import ru.liga.book.dto.SimilarityMetric;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Шаг similarityJob: загружает оценки в {@link RatingMatrix}, считает соседей книг
+ * ({@link BookNeighbourSearch}) и перезаписывает ими book_neighbours через COPY.
+ * Старые соседи удаляются в той же транзакции, поэтому до коммита читатели видят предыдущий расчёт.
+ */
+public class BookSimilarityTasklet implements Tasklet {
+
+    private static final Logger log = LoggerFactory.getLogger(BookSimilarityTasklet.class);
+
+    private static final int FETCH_SIZE = 10_000;
+    private static final int COPY_BUFFER = 64 * 1024;
+
+    private static final String COPY_NEIGHBOURS = "COPY book_neighbours "
+            + "(metric, book_id, rank, neighbour_id, score, common_users) FROM STDIN (FORMAT csv)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final DataSource dataSource;
+
+    private final int neighbours;
+
+    private final int minCommonUsers;
+
+    private final int maxUserRatings;
+
+    private final int parallelism;
+
+    /**
+     * @param neighbours     соседей на книгу для каждой меры
+     * @param minCommonUsers сколько общих читателей нужно соседям
+     * @param maxUserRatings читатели с большим числом оценок не учитываются
+     * @param parallelism    потоков расчёта, 0 - по числу процессоров
+     */
+    public BookSimilarityTasklet(DataSource dataSource, int neighbours, int minCommonUsers, int maxUserRatings,
+                                 int parallelism) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.dataSource = dataSource;
+        this.neighbours = neighbours;
+        this.minCommonUsers = minCommonUsers;
+        this.maxUserRatings = maxUserRatings;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public RepeatStatus execute(@NonNull StepContribution contribution, @NonNull ChunkContext chunkContext)
+            throws SQLException {
+        long start = System.currentTimeMillis();
+        RatingMatrix.Builder builder = RatingMatrix.builder(loadUserIds(), count(
+                "SELECT COUNT(*) FROM reviews WHERE rating IS NOT NULL"));
+        jdbcTemplate.query("SELECT book_id, user_id, rating FROM reviews WHERE rating IS NOT NULL ORDER BY book_id",
+                rs -> {
+                    builder.add(rs.getLong(1), rs.getLong(2), rs.getInt(3));
+                });
+        RatingMatrix matrix = builder.build();
+        long loaded = System.currentTimeMillis();
+        log.info("Rating matrix: {} books x {} users, {} ratings ({} MB) loaded in {} ms",
+                matrix.bookCount(), matrix.userCount(), matrix.ratingCount(), matrix.sizeInBytes() >> 20,
+                loaded - start);
+
+        BookNeighbourSearch search = new BookNeighbourSearch(matrix, neighbours, minCommonUsers, maxUserRatings);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            search.run(pool);
+        } finally {
+            pool.shutdown();
+        }
+        long computed = System.currentTimeMillis();
+        log.info("Book neighbours computed in {} ms on {} threads", computed - loaded, parallelism);
+
+        jdbcTemplate.update("DELETE FROM book_neighbours");
+        long rows = write(matrix, SimilarityMetric.COSINE, search.cosine())
+                + write(matrix, SimilarityMetric.JACCARD, search.jaccard());
+        log.info("{} book neighbours written in {} ms", rows, System.currentTimeMillis() - computed);
+
+        contribution.incrementWriteCount(rows);
+        ExecutionContext context = contribution.getStepExecution().getExecutionContext();
+        context.putInt("books", matrix.bookCount());
+        context.putInt("users", matrix.userCount());
+        context.putInt("ratings", matrix.ratingCount());
+        context.putLong("skippedRatings", builder.skipped());
+        context.putLong("matrixBytes", matrix.sizeInBytes());
+        return RepeatStatus.FINISHED;
+    }
+
+    private int count(String sql) {
+        Long count = jdbcTemplate.queryForObject(sql, Long.class);
+        return count == null ? 0 : (int) Math.min(count, Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * Id читателей по возрастанию: номер читателя в матрице - позиция его id в массиве
+     */
+    private long[] loadUserIds() {
+        int expected = Math.max(count("SELECT COUNT(*) FROM users"), 16);
+        return jdbcTemplate.query("SELECT id FROM users ORDER BY id", rs -> {
+            long[] ids = new long[expected];
+            int size = 0;
+            while (rs.next()) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                }
+                ids[size++] = rs.getLong(1);
+            }
+            return Arrays.copyOf(ids, size);
+        });
+    }
+
+    /**
+     * Соседи одной меры одним потоком COPY в соединении транзакции шага
+     */
+    private long write(RatingMatrix matrix, SimilarityMetric metric,
+                       BookNeighbourSearch.Neighbours result) throws SQLException {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            CopyIn copy = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_NEIGHBOURS);
+            try {
+                StringBuilder csv = new StringBuilder(COPY_BUFFER + 256);
+                long rows = 0;
+                for (int book = 0; book < matrix.bookCount(); book++) {
+                    for (int rank = 0; rank < result.k(); rank++) {
+                        int neighbour = result.book(book, rank);
+                        if (neighbour < 0) {
+                            break;
+                        }
+                        PgCopyItemWriter.appendRow(csv, new Object[]{metric.name(), matrix.bookId(book), rank,
+                                matrix.bookId(neighbour), result.score(book, rank), result.commonUsers(book, rank)});
+                        rows++;
+                        if (csv.length() >= COPY_BUFFER) {
+                            flush(copy, csv);
+                        }
+                    }
+                }
+                flush(copy, csv);
+                copy.endCopy();
+                return rows;
+            } finally {
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+            }
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private static void flush(CopyIn copy, StringBuilder csv) throws SQLException {
+        byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        csv.setLength(0);
+    }
+}
@@ -0,0 +1,41 @@
+package ru.liga.book.batch;
+
+import lombok.NonNull;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Делит CSV на непрерывные диапазоны байт [{@value #START_OFFSET}, {@value #END_OFFSET}), примерно равные
+ * по размеру и выровненные по началу записи ({@link CsvFiles#recordBoundaries}). Воркер открывает файл
+ * сразу со своего смещения, поэтому чтение всех партиций обходится в один проход по файлу; позиция внутри
+ * партиции сохраняется ридером в её контексте, и перезапуск продолжается с места падения.
+ */
+public class ByteRangePartitioner implements Partitioner {
+
+    public static final String START_OFFSET = "startOffset";
+    public static final String END_OFFSET = "endOffset";
+
+    private final Path file;
+
+    public ByteRangePartitioner(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    @NonNull
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        long[] boundaries = CsvFiles.recordBoundaries(file, Math.max(gridSize, 1));
+        Map<String, ExecutionContext> result = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < boundaries.length; i++) {
+            ExecutionContext context = new ExecutionContext();
+            context.putLong(START_OFFSET, boundaries[i]);
+            context.putLong(END_OFFSET, boundaries[i + 1]);
+            result.put("partition" + i, context);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,85 @@
+package ru.liga.book.batch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Вспомогательные операции над входными CSV миграции
+ */
+public final class CsvFiles {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private CsvFiles() {
+    }
+
+    /**
+     * Количество строк файла (последняя строка без перевода строки тоже считается).
+     * Файл читается блоками без декодирования в символы.
+     */
+    public static long countLines(Path path) {
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long lines = 0;
+            byte last = '\n';
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+                last = buffer[read - 1];
+            }
+            return last == '\n' ? lines : lines + 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + path, e);
+        }
+    }
+
+    /**
+     * Делит записи после строки заголовка не больше чем на parts диапазонов, примерно равных по байтам.
+     * Возвращает смещения их начал и последним элементом размер файла. Каждая граница - начало первой записи
+     * не раньше равной доли файла; перевод строки внутри поля в кавычках запись не завершает.
+     */
+    public static long[] recordBoundaries(Path path, int parts) {
+        try (InputStream in = Files.newInputStream(path)) {
+            long size = Files.size(path);
+            long[] boundaries = new long[parts + 1];
+            int count = 0;
+            long dataStart = size;
+            long offset = 0;
+            boolean quoted = false;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '"') {
+                        quoted = !quoted;
+                    } else if (buffer[i] == '\n' && !quoted) {
+                        long next = offset + i + 1;
+                        if (count == 0) {
+                            dataStart = next;
+                            boundaries[count++] = next;
+                        } else if (count < parts && next < size
+                                && next >= dataStart + (size - dataStart) * count / parts) {
+                            boundaries[count++] = next;
+                        }
+                    }
+                }
+                offset += read;
+            }
+            if (count == 0) {
+                boundaries[count++] = dataStart;
+            }
+            boundaries[count++] = size;
+            return Arrays.copyOf(boundaries, count);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + path, e);
+        }
+    }
+}
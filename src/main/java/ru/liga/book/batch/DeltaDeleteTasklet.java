@@ -0,0 +1,82 @@
+package ru.liga.book.batch;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * Удаляет строки, которые были в прошлом импорте, но отсутствуют в новом файле.
+ * Каждый оператор выполняется пакетом для всех таких ключей; удалёнными считаются строки,
+ * затронутые последним оператором, остальные ключи - пропущенными.
+ */
+public class DeltaDeleteTasklet implements Tasklet {
+
+    private static final Logger log = LoggerFactory.getLogger(DeltaDeleteTasklet.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Supplier<DeltaIndex> index;
+
+    private final LongFunction<Object[]> keyToArgs;
+
+    private final int batchSize;
+
+    private final String[] statements;
+
+    public DeltaDeleteTasklet(DataSource dataSource, Supplier<DeltaIndex> index, LongFunction<Object[]> keyToArgs,
+                              int batchSize, String... statements) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.index = index;
+        this.keyToArgs = keyToArgs;
+        this.batchSize = batchSize;
+        this.statements = statements;
+    }
+
+    @Override
+    public RepeatStatus execute(@NonNull StepContribution contribution, @NonNull ChunkContext chunkContext) {
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        long[] keys = {0};
+        long[] deleted = {0};
+        index.get().forEachUnseen(key -> {
+            batch.add(keyToArgs.apply(key));
+            keys[0]++;
+            if (batch.size() == batchSize) {
+                deleted[0] += delete(batch);
+            }
+        });
+        deleted[0] += delete(batch);
+        contribution.incrementWriteCount(deleted[0]);
+        for (long i = deleted[0]; i < keys[0]; i++) {
+            contribution.incrementWriteSkipCount();
+        }
+        log.info("Deleted {} of {} rows missing from the import file", deleted[0], keys[0]);
+        return RepeatStatus.FINISHED;
+    }
+
+    private long delete(List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int[] counts = new int[0];
+        for (String statement : statements) {
+            counts = jdbcTemplate.batchUpdate(statement, batch);
+        }
+        batch.clear();
+        long deleted = 0;
+        for (int count : counts) {
+            deleted += Math.max(count, 0);
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,108 @@
+package ru.liga.book.batch;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Хеши содержимого строк, уже лежащих в базе, по ключу строки (id книги или {@link #reviewKey}).
+ * Заполняется однопоточно до шага, во время шага только читается; отметки «строка есть в новом файле»
+ * пишутся в отдельный byte[] по слоту ключа, поэтому параллельные партиции не мешают друг другу.
+ */
+public class DeltaIndex {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private long[] hashes;
+    private byte[] seen;
+    private int mask;
+    private int size;
+
+    public DeltaIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit((int) Math.max(2, Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR)))
+                << 1;
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        hashes = new long[capacity];
+        seen = new byte[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Ключ отзыва из пары (book_id, user_id); оба id должны помещаться в 31 бит, см. {@link #fitsReviewKey}
+     */
+    public static long reviewKey(long bookId, long userId) {
+        if (!fitsReviewKey(bookId, userId)) {
+            throw new IllegalArgumentException("Review key out of range: book " + bookId + ", user " + userId);
+        }
+        return bookId << 32 | userId;
+    }
+
+    public static boolean fitsReviewKey(long bookId, long userId) {
+        return bookId >= 0 && bookId <= Integer.MAX_VALUE && userId >= 0 && userId <= Integer.MAX_VALUE;
+    }
+
+    public static long bookIdOf(long reviewKey) {
+        return reviewKey >>> 32;
+    }
+
+    public static long userIdOf(long reviewKey) {
+        return reviewKey & 0xffffffffL;
+    }
+
+    public void put(long key, long hash) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Unsupported key " + key);
+        }
+        if (size + 1 > keys.length * LOAD_FACTOR) {
+            throw new IllegalStateException("DeltaIndex is full: " + size + " keys");
+        }
+        int slot = slot(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+        }
+        hashes[slot] = hash;
+    }
+
+    /**
+     * Отмечает строку как присутствующую в файле и сообщает, совпадает ли её хеш с сохранённым
+     */
+    public boolean markAndCheckUnchanged(long key, long hash) {
+        int slot = slot(key);
+        if (keys[slot] == EMPTY) {
+            return false;
+        }
+        seen[slot] = 1;
+        return hashes[slot] == hash;
+    }
+
+    /**
+     * Ключи, которые были в базе, но не встретились в файле
+     */
+    public void forEachUnseen(LongConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY && seen[i] == 0) {
+                action.accept(keys[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long sizeInBytes() {
+        return 17L * keys.length + 64;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9e3779b97f4a7c15L;
+        int index = (int) (h ^ (h >>> 32)) & mask;
+        while (keys[index] != EMPTY && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+}
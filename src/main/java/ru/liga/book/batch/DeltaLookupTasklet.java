@@ -0,0 +1,72 @@
+package ru.liga.book.batch;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Загружает сохранённые хеши строк, пришедших из прошлых импортов (row_hash не null).
+ * Книги и отзывы, созданные через API, в индекс не попадают и дельта-импортом не удаляются;
+ * так же остаются нетронутыми отзывы с id, не помещающимися в ключ {@link DeltaIndex#reviewKey}.
+ */
+public class DeltaLookupTasklet implements Tasklet {
+
+    private static final Logger log = LoggerFactory.getLogger(DeltaLookupTasklet.class);
+
+    private static final int FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final DeltaState deltaState;
+
+    public DeltaLookupTasklet(DataSource dataSource, DeltaState deltaState) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.deltaState = deltaState;
+    }
+
+    @Override
+    public RepeatStatus execute(@NonNull StepContribution contribution, @NonNull ChunkContext chunkContext) {
+        DeltaIndex books = new DeltaIndex(count("SELECT COUNT(*) FROM books WHERE row_hash IS NOT NULL"));
+        jdbcTemplate.query("SELECT id, row_hash FROM books WHERE row_hash IS NOT NULL", rs -> {
+            books.put(rs.getLong(1), rs.getLong(2));
+        });
+
+        DeltaIndex reviews = new DeltaIndex(count("SELECT COUNT(*) FROM reviews WHERE row_hash IS NOT NULL"));
+        long[] outOfRange = {0};
+        jdbcTemplate.query("SELECT book_id, user_id, row_hash FROM reviews WHERE row_hash IS NOT NULL", rs -> {
+            long bookId = rs.getLong(1);
+            long userId = rs.getLong(2);
+            if (DeltaIndex.fitsReviewKey(bookId, userId)) {
+                reviews.put(DeltaIndex.reviewKey(bookId, userId), rs.getLong(3));
+            } else {
+                outOfRange[0]++;
+            }
+        });
+        if (outOfRange[0] > 0) {
+            log.warn("{} imported reviews have IDs above 2^31 and are left out of the delta index", outOfRange[0]);
+        }
+        deltaState.load(books, reviews);
+
+        ExecutionContext context = contribution.getStepExecution().getExecutionContext();
+        context.putInt("bookHashes", books.size());
+        context.putInt("reviewHashes", reviews.size());
+        context.putLong("deltaBytes", books.sizeInBytes() + reviews.sizeInBytes());
+        log.info("Loaded {} book and {} review hashes ({} KB) for delta import",
+                books.size(), reviews.size(), (books.sizeInBytes() + reviews.sizeInBytes()) / 1024);
+        return RepeatStatus.FINISHED;
+    }
+
+    private int count(String sql) {
+        Integer count = jdbcTemplate.queryForObject(sql, Integer.class);
+        return count == null ? 0 : count;
+    }
+}
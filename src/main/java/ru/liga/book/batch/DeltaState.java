@@ -0,0 +1,29 @@
+package ru.liga.book.batch;
+
+/**
+ * Индексы хешей книг и отзывов для дельта-импорта (spring.file.delta).
+ * Загружаются {@link DeltaLookupTasklet} в начале importJob и освобождаются после него.
+ */
+public class DeltaState {
+
+    private volatile DeltaIndex books = new DeltaIndex(0);
+
+    private volatile DeltaIndex reviews = new DeltaIndex(0);
+
+    public void load(DeltaIndex books, DeltaIndex reviews) {
+        this.books = books;
+        this.reviews = reviews;
+    }
+
+    public DeltaIndex books() {
+        return books;
+    }
+
+    public DeltaIndex reviews() {
+        return reviews;
+    }
+
+    public void clear() {
+        load(new DeltaIndex(0), new DeltaIndex(0));
+    }
+}
@@ -0,0 +1,10 @@
+package ru.liga.book.batch;
+
+import org.springframework.batch.core.BatchStatus;
+
+/**
+ * Импорт закончился (с любым статусом): данные books/reviews могли измениться целиком,
+ * индексы и кеши книг перестраиваются по этому событию
+ */
+public record ImportFinishedEvent(Long jobExecutionId, BatchStatus status) {
+}
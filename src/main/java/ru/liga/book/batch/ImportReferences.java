@@ -0,0 +1,41 @@
+package ru.liga.book.batch;
+
+import ru.liga.book.util.LongHashSet;
+
+/**
+ * Id книг и пользователей, известных на момент reviewStep. Заполняется {@link ReferenceLookupTasklet}
+ * одним проходом по таблицам и дополняется {@link UserProvisioningTasklet}; оба шага однопоточные.
+ * Во время reviewStep наборы только читаются, поэтому reviewProcessor проверяет ссылки
+ * без блокировок и запросов в базу.
+ */
+public class ImportReferences {
+
+    private volatile LongHashSet bookIds = new LongHashSet();
+
+    private volatile LongHashSet userIds = new LongHashSet();
+
+    public void load(LongHashSet bookIds, LongHashSet userIds) {
+        this.bookIds = bookIds;
+        this.userIds = userIds;
+    }
+
+    public boolean containsBook(long bookId) {
+        return bookIds.contains(bookId);
+    }
+
+    public boolean containsUser(long userId) {
+        return userIds.contains(userId);
+    }
+
+    public void addUser(long userId) {
+        userIds.add(userId);
+    }
+
+    public long sizeInBytes() {
+        return bookIds.sizeInBytes() + userIds.sizeInBytes();
+    }
+
+    public void clear() {
+        load(new LongHashSet(), new LongHashSet());
+    }
+}
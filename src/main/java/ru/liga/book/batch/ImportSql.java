@@ -0,0 +1,137 @@
+package ru.liga.book.batch;
+
+import ru.liga.book.model.Book;
+import ru.liga.book.model.Review;
+
+/**
+ * SQL, который используют writer'ы importJob. Держим в одном месте, чтобы
+ * список колонок books/reviews не расходился между режимами загрузки.
+ */
+public final class ImportSql {
+
+    public static final String INSERT_BOOK = """
+            INSERT INTO books (id, isbn, isbn13, name, original_publication_year, original_title, title,
+                               lang_code, image_url, small_image_url, rating_count, rating_avg, rating_sum,
+                               ratings_1, ratings_2, ratings_3, ratings_4, ratings_5, row_hash)
+            VALUES (:id, :isbn, :isbn13, :name, :originalPublicationYear, :originalTitle, :title,
+                    :langCode, :imageUrl, :smallImageUrl, :ratingCount, :ratingAvg, :ratingSum,
+                    :ratings1, :ratings2, :ratings3, :ratings4, :ratings5, :rowHash)
+            """;
+
+    /**
+     * Дельта-импорт: изменённая книга перезаписывается целиком, агрегаты оценок - тоже: значения из файла
+     * заменяют накопленные с прошлого импорта изменения отзывов через API
+     */
+    public static final String UPSERT_BOOK = INSERT_BOOK + """
+            ON CONFLICT (id) DO UPDATE SET
+                isbn = EXCLUDED.isbn, isbn13 = EXCLUDED.isbn13, name = EXCLUDED.name,
+                original_publication_year = EXCLUDED.original_publication_year,
+                original_title = EXCLUDED.original_title, title = EXCLUDED.title, lang_code = EXCLUDED.lang_code,
+                image_url = EXCLUDED.image_url, small_image_url = EXCLUDED.small_image_url,
+                rating_count = EXCLUDED.rating_count, rating_avg = EXCLUDED.rating_avg,
+                rating_sum = EXCLUDED.rating_sum, ratings_1 = EXCLUDED.ratings_1, ratings_2 = EXCLUDED.ratings_2,
+                ratings_3 = EXCLUDED.ratings_3, ratings_4 = EXCLUDED.ratings_4, ratings_5 = EXCLUDED.ratings_5,
+                row_hash = EXCLUDED.row_hash,
+                version = books.version + 1, updated_at = now()
+            """;
+
+    private static final String REVIEW_CONFLICT = "ON CONFLICT (book_id, user_id) WHERE row_hash IS NOT NULL";
+
+    /**
+     * Без ON CONFLICT: повторные оценки из файла отфильтровывает reviewProcessor ({@link ReviewClaims}),
+     * оставшийся конфликт - оценка, уже лежащая в базе, - роняет чанк, а не теряется молча
+     */
+    public static final String INSERT_REVIEW = """
+            INSERT INTO reviews (book_id, user_id, comment, rating, row_hash)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+
+    /**
+     * Дельта-импорт: в файле оценок нет комментария, поэтому обновляются только оценка и хеш
+     */
+    public static final String UPSERT_REVIEW = """
+            INSERT INTO reviews (book_id, user_id, comment, rating, row_hash)
+            VALUES (?, ?, ?, ?, ?)
+            """ + REVIEW_CONFLICT + " DO UPDATE SET rating = EXCLUDED.rating, row_hash = EXCLUDED.row_hash,"
+            + " version = reviews.version + 1, updated_at = now()";
+
+    public static final String DELETE_REVIEW = "DELETE FROM reviews WHERE book_id = ? AND user_id = ? AND row_hash IS NOT NULL";
+
+    /**
+     * Только импортированные отзывы: отзывы, оставленные через API, не удаляются
+     */
+    public static final String DELETE_BOOK_REVIEWS = "DELETE FROM reviews WHERE book_id = ? AND row_hash IS NOT NULL";
+
+    /**
+     * Книга, у которой остались отзывы из API, не удаляется: её перестанут трогать, когда отзывы удалят
+     */
+    public static final String DELETE_BOOK =
+            "DELETE FROM books b WHERE b.id = ? AND NOT EXISTS (SELECT 1 FROM reviews r WHERE r.book_id = b.id)";
+
+    private static final String BOOK_COLUMNS = """
+            id, isbn, isbn13, name, original_publication_year, original_title, title,
+            lang_code, image_url, small_image_url, rating_count, rating_avg, rating_sum,
+            ratings_1, ratings_2, ratings_3, ratings_4, ratings_5, row_hash""";
+
+    private static final String REVIEW_COLUMNS = "book_id, user_id, comment, rating, row_hash";
+
+    public static final String COPY_BOOKS =
+            "COPY books_staging (" + BOOK_COLUMNS + ") FROM STDIN (FORMAT csv)";
+
+    public static final String COPY_REVIEWS =
+            "COPY reviews_staging (" + REVIEW_COLUMNS + ") FROM STDIN (FORMAT csv)";
+
+    public static final String TRUNCATE_BOOKS_STAGING = "TRUNCATE books_staging";
+
+    public static final String TRUNCATE_REVIEWS_STAGING = "TRUNCATE reviews_staging";
+
+    /**
+     * Как и {@link #INSERT_BOOK} в режиме JDBC, повторный id книги роняет шаг, а не пропускается молча
+     */
+    public static final String MERGE_BOOKS = "INSERT INTO books (" + BOOK_COLUMNS + ")\n"
+            + "SELECT " + BOOK_COLUMNS + " FROM books_staging";
+
+    /**
+     * Как и {@link #INSERT_REVIEW}: повторы из файла отфильтрованы раньше, оценка, уже лежащая в базе,
+     * падает на уникальном индексе
+     */
+    public static final String MERGE_REVIEWS = "INSERT INTO reviews (" + REVIEW_COLUMNS + ")\n"
+            + "SELECT " + REVIEW_COLUMNS + " FROM reviews_staging";
+
+    /**
+     * Книги вставляются с id из CSV, минуя IDENTITY: без сдвига последовательности следующий
+     * POST /api/books получит уже занятый id
+     */
+    public static final String SYNC_BOOK_SEQUENCE = """
+            SELECT setval(pg_get_serial_sequence('books', 'id'), GREATEST((SELECT MAX(id) FROM books), 1))
+            """;
+
+    /**
+     * После импорта: отзывы могли измениться у любой книги, загруженной раньше. Книги, вставленные
+     * этим же импортом, уже получили reviews_updated_at по умолчанию и не переписываются.
+     */
+    public static final String TOUCH_BOOK_REVIEWS =
+            "UPDATE books SET reviews_updated_at = now() WHERE reviews_updated_at < ?";
+
+    private ImportSql() {
+    }
+
+    /**
+     * Значения книги в порядке колонок {@link #COPY_BOOKS}
+     */
+    public static Object[] bookRow(Book book) {
+        return new Object[]{book.getId(), book.getIsbn(), book.getIsbn13(), book.getName(),
+                book.getOriginalPublicationYear(), book.getOriginalTitle(), book.getTitle(), book.getLangCode(),
+                book.getImageUrl(), book.getSmallImageUrl(), book.getRatingCount(), book.getRatingAvg(),
+                book.getRatingSum(), book.getRatings1(), book.getRatings2(), book.getRatings3(), book.getRatings4(),
+                book.getRatings5(), book.getRowHash()};
+    }
+
+    /**
+     * Значения отзыва в порядке колонок {@link #COPY_REVIEWS}
+     */
+    public static Object[] reviewRow(Review review) {
+        return new Object[]{review.getBook().getId(), review.getUser().getId(), review.getComment(),
+                review.getRating(), review.getRowHash()};
+    }
+}
@@ -0,0 +1,52 @@
+package ru.liga.book.batch;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Первый шаг importJob: считает строки данных в файлах книг и оценок и кладёт их в контекст задания,
+ * откуда их берёт прогресс импорта (ETA). Подсчёт идёт уже в потоке задания, а не при его запуске.
+ */
+public class InputRowsTasklet implements Tasklet {
+
+    public static final String BOOK_ROWS = "bookRows";
+    public static final String REVIEW_ROWS = "reviewRows";
+
+    private static final Logger log = LoggerFactory.getLogger(InputRowsTasklet.class);
+
+    private final Path bookInput;
+
+    private final Path reviewInput;
+
+    public InputRowsTasklet(Path bookInput, Path reviewInput) {
+        this.bookInput = bookInput;
+        this.reviewInput = reviewInput;
+    }
+
+    @Override
+    public RepeatStatus execute(@NonNull StepContribution contribution, @NonNull ChunkContext chunkContext) {
+        long bookRows = dataRows(bookInput);
+        long reviewRows = dataRows(reviewInput);
+        ExecutionContext context = contribution.getStepExecution().getJobExecution().getExecutionContext();
+        context.putLong(BOOK_ROWS, bookRows);
+        context.putLong(REVIEW_ROWS, reviewRows);
+        log.info("Input rows: {} books, {} ratings", bookRows, reviewRows);
+        return RepeatStatus.FINISHED;
+    }
+
+    /**
+     * Строки данных без заголовка; 0, если файла нет (тогда ETA по нему не считается)
+     */
+    private static long dataRows(Path input) {
+        return Files.isRegularFile(input) ? Math.max(CsvFiles.countLines(input) - 1, 0) : 0;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.liga.book.batch;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ISBN-13, уже занятые книгами: лежащими в базе до начала importJob ({@link IsbnLookupTasklet}) и обработанными
+ * в нём. Колонка books.isbn13 уникальна, поэтому повтор ISBN не должен ронять чанк: ISBN остаётся за книгой
+ * из базы или обработанной первой, у остальных {@link BookCsvProcessor} его обнуляет. Книги, обменявшиеся
+ * ISBN в новом файле, теряют оба: ISBN из базы считается занятым до конца импорта.
+ * Партиции bookStep обращаются к набору одновременно.
+ */
+public class IsbnClaims {
+
+    private final Map<Long, Long> owners = new ConcurrentHashMap<>();
+
+    /**
+     * @return true, если ISBN свободен или уже принадлежит этой же книге
+     */
+    public boolean claim(long isbn13, long bookId) {
+        Long owner = owners.putIfAbsent(isbn13, bookId);
+        return owner == null || owner == bookId;
+    }
+
+    public int size() {
+        return owners.size();
+    }
+
+    public void clear() {
+        owners.clear();
+    }
+}
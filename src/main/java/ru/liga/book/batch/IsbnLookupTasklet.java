@@ -0,0 +1,44 @@
+package ru.liga.book.batch;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Загружает ISBN-13 книг, уже лежащих в базе (из прошлых импортов и созданных через API), в {@link IsbnClaims}
+ * перед bookStep
+ */
+public class IsbnLookupTasklet implements Tasklet {
+
+    private static final Logger log = LoggerFactory.getLogger(IsbnLookupTasklet.class);
+
+    private static final int FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final IsbnClaims isbnClaims;
+
+    public IsbnLookupTasklet(DataSource dataSource, IsbnClaims isbnClaims) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.isbnClaims = isbnClaims;
+    }
+
+    @Override
+    public RepeatStatus execute(@NonNull StepContribution contribution, @NonNull ChunkContext chunkContext) {
+        isbnClaims.clear();
+        jdbcTemplate.query("SELECT isbn13, id FROM books WHERE isbn13 IS NOT NULL", rs -> {
+            isbnClaims.claim(rs.getLong(1), rs.getLong(2));
+        });
+        contribution.getStepExecution().getExecutionContext().putInt("isbnClaims", isbnClaims.size());
+        log.info("Loaded {} ISBN-13 claims of stored books", isbnClaims.size());
+        return RepeatStatus.FINISHED;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.liga.book.batch;
+
+/**
+ * Способ записи строк CSV в базу при миграции (spring.file.load-mode)
+ */
+public enum LoadMode {
+    /**
+     * Запись через JpaItemWriter (merge каждой сущности)
+     */
+    JPA,
+    /**
+     * Пакетный INSERT через JdbcBatchItemWriter, один round trip на чанк
+     */
+    JDBC,
+    /**
+     * COPY FROM STDIN в нежурналируемые staging-таблицы и слияние в books/reviews в конце шага
+     */
+    COPY
+}
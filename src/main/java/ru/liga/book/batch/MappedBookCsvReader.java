@@ -0,0 +1,457 @@
+package ru.liga.book.batch;
+
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import ru.liga.book.model.BookCsv;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Ридер work_book_denormalized.csv без FieldSet и BeanWrapper: файл отображается в память окнами,
+ * поля режутся прямо в буфере (кавычки и "" внутри authors/title поддерживаются), числа разбираются
+ * из байтов без промежуточных строк. Строки создаются только для текстовых колонок.
+ * <p>
+ * Порядок колонок совпадает с {@code bookReader()}. Партиция читает записи, начинающиеся в диапазоне байт
+ * [startOffset, endOffset) ({@link ByteRangePartitioner}); заголовок пропускается, только если диапазон
+ * начинается с начала файла. Позиция - номер записи внутри диапазона, поэтому перезапуск работает так же,
+ * как у FlatFileItemReader.
+ */
+public class MappedBookCsvReader extends AbstractItemCountingItemStreamItemReader<BookCsv> {
+
+    static final int FIELD_COUNT = 23;
+
+    private static final long DEFAULT_WINDOW_SIZE = 256L << 20;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private final Path file;
+
+    private final long startOffset;
+
+    private final long endOffset;
+
+    private final long windowSize;
+
+    private final int[] fieldStart = new int[FIELD_COUNT];
+
+    private final int[] fieldEnd = new int[FIELD_COUNT];
+
+    private final boolean[] fieldQuoted = new boolean[FIELD_COUNT];
+
+    private FileChannel channel;
+
+    private long fileSize;
+
+    private long rangeEnd;
+
+    private MappedByteBuffer window;
+
+    private long windowStart;
+
+    private long position;
+
+    private int lineNumber;
+
+    private int fieldCount;
+
+    private byte[] scratch = new byte[256];
+
+    public MappedBookCsvReader(Path file) {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param endOffset меньше нуля - до конца файла
+     */
+    public MappedBookCsvReader(Path file, long startOffset, long endOffset) {
+        this(file, startOffset, endOffset, DEFAULT_WINDOW_SIZE);
+    }
+
+    MappedBookCsvReader(Path file, long windowSize) {
+        this(file, 0, -1, windowSize);
+    }
+
+    MappedBookCsvReader(Path file, long startOffset, long endOffset, long windowSize) {
+        this.file = file;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.windowSize = windowSize;
+        setName("MappedBookCsvReader");
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        fileSize = channel.size();
+        rangeEnd = endOffset < 0 ? fileSize : Math.min(endOffset, fileSize);
+        position = Math.min(startOffset, fileSize);
+        lineNumber = 0;
+        map(position);
+        if (position == 0) {
+            // заголовок
+            nextRecord();
+        }
+    }
+
+    @Override
+    protected BookCsv doRead() {
+        if (!nextRecord()) {
+            return null;
+        }
+        if (fieldCount != FIELD_COUNT) {
+            throw parseError("Incorrect number of fields: expected " + FIELD_COUNT + ", actual " + fieldCount);
+        }
+        try {
+            return mapRecord();
+        } catch (NumberFormatException e) {
+            throw parseError(e.getMessage());
+        }
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) {
+        for (int i = 0; i < itemIndex && nextRecord(); i++) {
+            // пропуск без разбора полей
+        }
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        window = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private BookCsv mapRecord() {
+        BookCsv book = new BookCsv();
+        book.setId(parseInteger(0));
+        book.setBookId(parseLong(1));
+        book.setBestBookId(parseInteger(2));
+        book.setWorkId(parseInteger(3));
+        book.setBooksCount(parseInteger(4));
+        book.setIsbn(text(5));
+        book.setIsbn13(text(6));
+        book.setAuthors(text(7));
+        book.setOriginalPublicationYear(parseDouble(8));
+        book.setOriginalTitle(text(9));
+        book.setTitle(text(10));
+        book.setLanguageCode(text(11));
+        book.setAverageRating(parseDouble(12));
+        book.setRatingsCount(parseInteger(13));
+        book.setWorkRatingsCount(parseInteger(14));
+        book.setWorkTextReviewsCount(parseInteger(15));
+        book.setRatings1(parseInteger(16));
+        book.setRatings2(parseInteger(17));
+        book.setRatings3(parseInteger(18));
+        book.setRatings4(parseInteger(19));
+        book.setRatings5(parseInteger(20));
+        book.setImageUrl(text(21));
+        book.setSmallImageUrl(text(22));
+        return book;
+    }
+
+    /**
+     * Размечает поля следующей записи. Если запись не помещается в текущее окно, окно переотображается
+     * с её начала. Возвращает false в конце диапазона.
+     */
+    private boolean nextRecord() {
+        while (true) {
+            if (position >= rangeEnd) {
+                return false;
+            }
+            int end = tokenize((int) (position - windowStart));
+            if (end >= 0) {
+                position = windowStart + end;
+                lineNumber++;
+                return true;
+            }
+            if (windowStart == position && windowStart + window.limit() >= fileSize) {
+                throw new IllegalStateException("Unterminated quoted field at line " + (lineNumber + 1));
+            }
+            if (windowStart == position) {
+                throw new IllegalStateException("Record at line " + (lineNumber + 1)
+                        + " is larger than the mapping window of " + windowSize + " bytes");
+            }
+            map(position);
+        }
+    }
+
+    /**
+     * @return смещение в окне сразу за записью или -1, если запись обрывается на границе окна
+     */
+    private int tokenize(int offset) {
+        MappedByteBuffer buffer = window;
+        int limit = buffer.limit();
+        boolean lastWindow = windowStart + limit >= fileSize;
+        int i = offset;
+        int field = 0;
+        while (true) {
+            int start;
+            int end;
+            boolean quoted = i < limit && buffer.get(i) == '"';
+            if (quoted) {
+                start = ++i;
+                while (true) {
+                    if (i >= limit) {
+                        return -1;
+                    }
+                    if (buffer.get(i) == '"') {
+                        if (i + 1 < limit && buffer.get(i + 1) == '"') {
+                            i += 2;
+                            continue;
+                        }
+                        if (i + 1 >= limit && !lastWindow) {
+                            return -1;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                end = i++;
+                while (i < limit && buffer.get(i) != ',' && buffer.get(i) != '\n') {
+                    i++;
+                }
+            } else {
+                start = i;
+                while (i < limit && buffer.get(i) != ',' && buffer.get(i) != '\n') {
+                    i++;
+                }
+                end = i;
+                if (end > start && buffer.get(end - 1) == '\r') {
+                    end--;
+                }
+            }
+            if (field < FIELD_COUNT) {
+                fieldStart[field] = start;
+                fieldEnd[field] = end;
+                fieldQuoted[field] = quoted;
+            }
+            field++;
+
+            if (i >= limit) {
+                if (!lastWindow) {
+                    return -1;
+                }
+                fieldCount = field;
+                return i;
+            }
+            if (buffer.get(i++) == '\n') {
+                fieldCount = field;
+                return i;
+            }
+        }
+    }
+
+    private void map(long from) {
+        try {
+            long size = Math.min(windowSize, fileSize - from);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, from, size);
+            windowStart = from;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map " + file + " at offset " + from, e);
+        }
+    }
+
+    private String text(int field) {
+        int start = fieldStart[field];
+        int length = fieldEnd[field] - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        window.get(start, scratch, 0, length);
+        if (fieldQuoted[field]) {
+            length = unescapeQuotes(scratch, length);
+        }
+        // как FieldSet.readString: пробелы по краям отбрасываются
+        int from = 0;
+        while (from < length && (scratch[from] & 0xff) <= ' ') {
+            from++;
+        }
+        while (length > from && (scratch[length - 1] & 0xff) <= ' ') {
+            length--;
+        }
+        return new String(scratch, from, length - from, StandardCharsets.UTF_8);
+    }
+
+    private static int unescapeQuotes(byte[] bytes, int length) {
+        int target = 0;
+        for (int i = 0; i < length; i++) {
+            bytes[target++] = bytes[i];
+            if (bytes[i] == '"' && i + 1 < length && bytes[i + 1] == '"') {
+                i++;
+            }
+        }
+        return target;
+    }
+
+    private Integer parseInteger(int field) {
+        Long value = parseLong(field);
+        if (value == null) {
+            return null;
+        }
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Value out of int range in column " + field + ": " + value);
+        }
+        return value.intValue();
+    }
+
+    private Long parseLong(int field) {
+        int start = skipLeadingSpaces(fieldStart[field], fieldEnd[field]);
+        int end = skipTrailingSpaces(start, fieldEnd[field]);
+        if (start == end || isNullLiteral(start, end)) {
+            return null;
+        }
+        boolean negative = window.get(start) == '-';
+        int i = negative || window.get(start) == '+' ? start + 1 : start;
+        if (i == end || end - i > 18) {
+            throw new NumberFormatException("Invalid integer in column " + field + ": " + ascii(start, end));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = window.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid integer in column " + field + ": " + ascii(start, end));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Быстрый путь для значений вида 9.78043902348e+12: мантисса до 15 значащих цифр и порядок до 22
+     * переводятся в double точно (одно умножение или деление на точную степень десяти).
+     * Остальные значения - через Double.parseDouble.
+     */
+    private Double parseDouble(int field) {
+        int start = skipLeadingSpaces(fieldStart[field], fieldEnd[field]);
+        int end = skipTrailingSpaces(start, fieldEnd[field]);
+        if (start == end || isNullLiteral(start, end)) {
+            return null;
+        }
+        int i = start;
+        boolean negative = false;
+        byte first = window.get(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        boolean exact = true;
+        for (; i < end && isDigit(window.get(i)); i++) {
+            anyDigit = true;
+            if (mantissa == 0 && window.get(i) == '0') {
+                continue;
+            }
+            if (digits < MAX_EXACT_DIGITS) {
+                mantissa = mantissa * 10 + (window.get(i) - '0');
+                digits++;
+            } else {
+                exact = false;
+            }
+        }
+        if (i < end && window.get(i) == '.') {
+            for (i++; i < end && isDigit(window.get(i)); i++) {
+                anyDigit = true;
+                if (mantissa == 0 && window.get(i) == '0') {
+                    exponent--;
+                    continue;
+                }
+                if (digits < MAX_EXACT_DIGITS) {
+                    mantissa = mantissa * 10 + (window.get(i) - '0');
+                    digits++;
+                    exponent--;
+                } else if (window.get(i) != '0') {
+                    exact = false;
+                }
+            }
+        }
+        if (anyDigit && i < end && (window.get(i) == 'e' || window.get(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (window.get(i) == '-' || window.get(i) == '+')) {
+                negativeExponent = window.get(i) == '-';
+                i++;
+            }
+            int exponentStart = i;
+            int explicitExponent = 0;
+            for (; i < end && isDigit(window.get(i)) && explicitExponent < 10_000; i++) {
+                explicitExponent = explicitExponent * 10 + (window.get(i) - '0');
+            }
+            if (i == exponentStart) {
+                anyDigit = false;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (!anyDigit || i != end) {
+            return fallbackParseDouble(field, start, end);
+        }
+        if (!exact || exponent < -22 || exponent > 22) {
+            return fallbackParseDouble(field, start, end);
+        }
+        double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    private Double fallbackParseDouble(int field, int start, int end) {
+        String text = ascii(start, end);
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("Invalid number in column " + field + ": " + text);
+        }
+    }
+
+    private boolean isNullLiteral(int start, int end) {
+        return end - start == 4
+                && (window.get(start) | 0x20) == 'n'
+                && (window.get(start + 1) | 0x20) == 'u'
+                && (window.get(start + 2) | 0x20) == 'l'
+                && (window.get(start + 3) | 0x20) == 'l';
+    }
+
+    private int skipLeadingSpaces(int start, int end) {
+        while (start < end && window.get(start) == ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private int skipTrailingSpaces(int start, int end) {
+        while (end > start && window.get(end - 1) == ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private String ascii(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        window.get(start, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private FlatFileParseException parseError(String message) {
+        int start = fieldStart[0];
+        int end = (int) Math.min(position - windowStart, window.limit());
+        byte[] bytes = new byte[Math.max(end - start, 0)];
+        window.get(start, bytes);
+        return new FlatFileParseException(message, new String(bytes, StandardCharsets.UTF_8).strip(), lineNumber);
+    }
+}
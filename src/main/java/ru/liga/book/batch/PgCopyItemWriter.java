@@ -0,0 +1,75 @@
+package ru.liga.book.batch;
+
+import lombok.NonNull;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+
+import javax.sql.DataSource;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.util.function.Function;
+
+/**
+ * Пишет чанк одним {@code COPY ... FROM STDIN (FORMAT csv)} через CopyManager драйвера PostgreSQL.
+ * Использует соединение текущей транзакции шага, поэтому COPY коммитится вместе с чанком.
+ */
+public class PgCopyItemWriter<T> implements ItemWriter<T> {
+
+    private final DataSource dataSource;
+
+    private final String copySql;
+
+    private final Function<T, Object[]> rowMapper;
+
+    public PgCopyItemWriter(DataSource dataSource, String copySql, Function<T, Object[]> rowMapper) {
+        this.dataSource = dataSource;
+        this.copySql = copySql;
+        this.rowMapper = rowMapper;
+    }
+
+    @Override
+    public void write(@NonNull Chunk<? extends T> chunk) throws Exception {
+        StringBuilder csv = new StringBuilder(chunk.size() * 256);
+        for (T item : chunk) {
+            appendRow(csv, rowMapper.apply(item));
+        }
+
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            copyManager.copyIn(copySql, new StringReader(csv.toString()));
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    /**
+     * null пишется пустым полем без кавычек (NULL в CSV-формате COPY), строки - всегда в кавычках.
+     * Тот же CSV отдаёт выгрузка каталога.
+     */
+    public static void appendRow(StringBuilder csv, Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                csv.append(',');
+            }
+            Object value = values[i];
+            if (value instanceof CharSequence text) {
+                csv.append('"');
+                for (int j = 0; j < text.length(); j++) {
+                    char c = text.charAt(j);
+                    if (c == '"') {
+                        csv.append('"');
+                    }
+                    csv.append(c);
+                }
+                csv.append('"');
+            } else if (value != null) {
+                csv.append(value);
+            }
+        }
+        csv.append('\n');
+    }
+}
@@ -0,0 +1,152 @@
+package ru.liga.book.batch;
+
+import java.util.Arrays;
+
+/**
+ * Разреженная матрица оценок книги × читатели в формате CSR на примитивных массивах.
+ * Строка книги b - элементы с bookOffsets[b] по bookOffsets[b + 1] - 1 массивов bookUsers/bookRatings,
+ * строка читателя u - то же в userOffsets/userBooks/userRatings (транспонированная матрица).
+ * Книги и читатели пронумерованы подряд с нуля; исходные id книг - в bookIds. Около 10 байт на оценку.
+ */
+public final class RatingMatrix {
+
+    final long[] bookIds;
+
+    final int[] bookOffsets;
+
+    final int[] bookUsers;
+
+    final byte[] bookRatings;
+
+    final int[] userOffsets;
+
+    final int[] userBooks;
+
+    final byte[] userRatings;
+
+    private RatingMatrix(long[] bookIds, int[] bookOffsets, int[] bookUsers, byte[] bookRatings, int userCount) {
+        this.bookIds = bookIds;
+        this.bookOffsets = bookOffsets;
+        this.bookUsers = bookUsers;
+        this.bookRatings = bookRatings;
+
+        int ratings = bookUsers.length;
+        userOffsets = new int[userCount + 1];
+        for (int i = 0; i < ratings; i++) {
+            userOffsets[bookUsers[i] + 1]++;
+        }
+        for (int u = 0; u < userCount; u++) {
+            userOffsets[u + 1] += userOffsets[u];
+        }
+        userBooks = new int[ratings];
+        userRatings = new byte[ratings];
+        int[] next = Arrays.copyOf(userOffsets, userCount);
+        for (int b = 0; b < bookIds.length; b++) {
+            for (int i = bookOffsets[b]; i < bookOffsets[b + 1]; i++) {
+                int position = next[bookUsers[i]]++;
+                userBooks[position] = b;
+                userRatings[position] = bookRatings[i];
+            }
+        }
+    }
+
+    /**
+     * @param userIds     id всех читателей по возрастанию
+     * @param ratingsHint ожидаемое число оценок, чтобы массивы не пришлось расширять
+     */
+    public static Builder builder(long[] userIds, int ratingsHint) {
+        return new Builder(userIds, ratingsHint);
+    }
+
+    public int bookCount() {
+        return bookIds.length;
+    }
+
+    public int userCount() {
+        return userOffsets.length - 1;
+    }
+
+    public int ratingCount() {
+        return bookUsers.length;
+    }
+
+    public long bookId(int book) {
+        return bookIds[book];
+    }
+
+    public long sizeInBytes() {
+        return 8L * bookIds.length + 4L * (bookOffsets.length + userOffsets.length)
+                + 10L * bookUsers.length;
+    }
+
+    /**
+     * Принимает оценки, упорядоченные по id книги
+     */
+    public static final class Builder {
+
+        private final long[] userIds;
+
+        private long[] bookIds = new long[1024];
+
+        private int[] bookOffsets = new int[1025];
+
+        private int books;
+
+        private int[] users;
+
+        private byte[] ratings;
+
+        private int size;
+
+        private long skipped;
+
+        private Builder(long[] userIds, int ratingsHint) {
+            this.userIds = userIds;
+            this.users = new int[Math.max(ratingsHint, 16)];
+            this.ratings = new byte[users.length];
+        }
+
+        /**
+         * @return false, если читателя нет среди userIds (добавлен после их загрузки) - оценка пропущена
+         */
+        public boolean add(long bookId, long userId, int rating) {
+            int user = Arrays.binarySearch(userIds, userId);
+            if (user < 0) {
+                skipped++;
+                return false;
+            }
+            if (books == 0 || bookIds[books - 1] != bookId) {
+                if (books > 0 && bookId < bookIds[books - 1]) {
+                    throw new IllegalStateException("Ratings must be ordered by book id: " + bookId);
+                }
+                if (books == bookIds.length) {
+                    bookIds = Arrays.copyOf(bookIds, books * 2);
+                    bookOffsets = Arrays.copyOf(bookOffsets, books * 2 + 1);
+                }
+                bookIds[books] = bookId;
+                bookOffsets[books] = size;
+                books++;
+            }
+            if (size == users.length) {
+                int capacity = size + (size >> 1);
+                users = Arrays.copyOf(users, capacity);
+                ratings = Arrays.copyOf(ratings, capacity);
+            }
+            users[size] = user;
+            ratings[size] = (byte) rating;
+            size++;
+            return true;
+        }
+
+        public long skipped() {
+            return skipped;
+        }
+
+        public RatingMatrix build() {
+            bookOffsets[books] = size;
+            return new RatingMatrix(Arrays.copyOf(bookIds, books), Arrays.copyOf(bookOffsets, books + 1),
+                    users.length == size ? users : Arrays.copyOf(users, size),
+                    ratings.length == size ? ratings : Arrays.copyOf(ratings, size), userIds.length);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.liga.book.batch;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.liga.book.util.LongHashSet;
+
+import javax.sql.DataSource;
+
+/**
+ * Загружает все id книг и пользователей в {@link ImportReferences} перед reviewStep
+ */
+public class ReferenceLookupTasklet implements Tasklet {
+
+    private static final Logger log = LoggerFactory.getLogger(ReferenceLookupTasklet.class);
+
+    private static final int FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ImportReferences importReferences;
+
+    public ReferenceLookupTasklet(DataSource dataSource, ImportReferences importReferences) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.importReferences = importReferences;
+    }
+
+    @Override
+    public RepeatStatus execute(@NonNull StepContribution contribution, @NonNull ChunkContext chunkContext) {
+        LongHashSet bookIds = loadIds("SELECT COUNT(*) FROM books", "SELECT id FROM books");
+        LongHashSet userIds = loadIds("SELECT COUNT(*) FROM users", "SELECT id FROM users");
+        importReferences.load(bookIds, userIds);
+
+        ExecutionContext context = contribution.getStepExecution().getExecutionContext();
+        context.putInt("bookIds", bookIds.size());
+        context.putInt("userIds", userIds.size());
+        context.putLong("lookupBytes", importReferences.sizeInBytes());
+        log.info("Loaded {} book ids ({} KB) and {} user ids ({} KB) for review lookups",
+                bookIds.size(), bookIds.sizeInBytes() / 1024, userIds.size(), userIds.sizeInBytes() / 1024);
+        return RepeatStatus.FINISHED;
+    }
+
+    private LongHashSet loadIds(String countSql, String idSql) {
+        Integer count = jdbcTemplate.queryForObject(countSql, Integer.class);
+        LongHashSet ids = new LongHashSet(count == null ? 16 : count);
+        jdbcTemplate.query(idSql, rs -> {
+            ids.add(rs.getLong(1));
+        });
+        return ids;
+    }
+}
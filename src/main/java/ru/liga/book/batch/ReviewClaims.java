@@ -0,0 +1,52 @@
+package ru.liga.book.batch;
+
+import ru.liga.book.util.LongHashSet;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Пары (книга, пользователь), оценки которых уже обработаны в этом importJob. Повторная оценка в файле
+ * не должна ронять чанк на уникальном индексе uq_reviews_imported_book_user: reviewProcessor оставляет
+ * первую и отфильтровывает остальные (filterCount шага). Партиции reviewStep обращаются к набору одновременно,
+ * поэтому ключи разложены по полосам со своим монитором.
+ */
+public class ReviewClaims {
+
+    private static final int STRIPES = 64;
+
+    private volatile LongHashSet[] stripes = newStripes();
+
+    /**
+     * Пары, не помещающиеся в {@link DeltaIndex#reviewKey}
+     */
+    private final Set<List<Long>> wide = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @return true, если оценка этой книги этим пользователем встретилась впервые
+     */
+    public boolean claim(long bookId, long userId) {
+        if (!DeltaIndex.fitsReviewKey(bookId, userId)) {
+            return wide.add(List.of(bookId, userId));
+        }
+        long key = DeltaIndex.reviewKey(bookId, userId);
+        LongHashSet stripe = stripes[Long.hashCode(key) & (STRIPES - 1)];
+        synchronized (stripe) {
+            return stripe.add(key);
+        }
+    }
+
+    public void clear() {
+        stripes = newStripes();
+        wide.clear();
+    }
+
+    private static LongHashSet[] newStripes() {
+        LongHashSet[] stripes = new LongHashSet[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new LongHashSet();
+        }
+        return stripes;
+    }
+}
@@ -0,0 +1,42 @@
+package ru.liga.book.batch;
+
+import ru.liga.book.model.Book;
+import ru.liga.book.model.Review;
+import ru.liga.book.util.ContentHash;
+
+/**
+ * Хеш содержимого импортируемых строк (колонка row_hash). Ключ строки в хеш не входит.
+ */
+public final class RowHashes {
+
+    private RowHashes() {
+    }
+
+    public static long book(Book book) {
+        long hash = ContentHash.SEED;
+        hash = ContentHash.add(hash, book.getIsbn());
+        hash = ContentHash.add(hash, book.getIsbn13());
+        hash = ContentHash.add(hash, book.getName());
+        hash = ContentHash.add(hash, book.getOriginalPublicationYear());
+        hash = ContentHash.add(hash, book.getOriginalTitle());
+        hash = ContentHash.add(hash, book.getTitle());
+        hash = ContentHash.add(hash, book.getLangCode());
+        hash = ContentHash.add(hash, book.getImageUrl());
+        hash = ContentHash.add(hash, book.getSmallImageUrl());
+        hash = ContentHash.add(hash, book.getRatingCount());
+        hash = ContentHash.add(hash, book.getRatingAvg());
+        hash = ContentHash.add(hash, book.getRatings1());
+        hash = ContentHash.add(hash, book.getRatings2());
+        hash = ContentHash.add(hash, book.getRatings3());
+        hash = ContentHash.add(hash, book.getRatings4());
+        hash = ContentHash.add(hash, book.getRatings5());
+        return ContentHash.finish(hash);
+    }
+
+    public static long review(Review review) {
+        long hash = ContentHash.SEED;
+        hash = ContentHash.add(hash, review.getRating());
+        hash = ContentHash.add(hash, review.getComment());
+        return ContentHash.finish(hash);
+    }
+}
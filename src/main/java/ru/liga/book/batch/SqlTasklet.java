@@ -0,0 +1,39 @@
+package ru.liga.book.batch;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Выполняет набор SQL-операторов в транзакции шага (подготовка и слияние staging-таблиц)
+ */
+public class SqlTasklet implements Tasklet {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlTasklet.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String[] statements;
+
+    public SqlTasklet(DataSource dataSource, String... statements) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.statements = statements;
+    }
+
+    @Override
+    public RepeatStatus execute(@NonNull StepContribution contribution, @NonNull ChunkContext chunkContext) {
+        for (String statement : statements) {
+            int rows = jdbcTemplate.update(statement);
+            contribution.incrementWriteCount(Math.max(rows, 0));
+            log.info("{}: {} rows", statement.strip().lines().findFirst().orElse(statement), rows);
+        }
+        return RepeatStatus.FINISHED;
+    }
+}
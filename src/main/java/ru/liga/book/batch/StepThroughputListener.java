@@ -0,0 +1,36 @@
+package ru.liga.book.batch;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Считает скорость шага (строк в секунду) и кладёт её в контекст шага,
+ * чтобы значение сохранилось в BATCH_STEP_EXECUTION_CONTEXT вместе с остальной статистикой.
+ */
+public class StepThroughputListener implements StepExecutionListener {
+
+    public static final String ROWS_PER_SECOND = "rowsPerSecond";
+
+    private static final Logger log = LoggerFactory.getLogger(StepThroughputListener.class);
+
+    @Override
+    public ExitStatus afterStep(@NonNull StepExecution stepExecution) {
+        LocalDateTime startTime = stepExecution.getStartTime();
+        long millis = startTime == null ? 0 : Duration.between(startTime, LocalDateTime.now()).toMillis();
+        double rowsPerSecond = stepExecution.getReadCount() * 1000.0 / Math.max(millis, 1);
+
+        stepExecution.getExecutionContext().putDouble(ROWS_PER_SECOND, rowsPerSecond);
+        log.info("Step {} finished: read {}, written {}, filtered {}, skipped {}, commits {} in {} ms ({} rows/sec)",
+                stepExecution.getStepName(), stepExecution.getReadCount(), stepExecution.getWriteCount(),
+                stepExecution.getFilterCount(), stepExecution.getSkipCount(), stepExecution.getCommitCount(),
+                millis, String.format("%.1f", rowsPerSecond));
+        return stepExecution.getExitStatus();
+    }
+}
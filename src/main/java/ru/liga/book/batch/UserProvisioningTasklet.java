@@ -0,0 +1,207 @@
+package ru.liga.book.batch;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.liga.book.model.Role;
+import ru.liga.book.repository.RoleRepository;
+import ru.liga.book.util.LongHashSet;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Создаёт пользователей из файла оценок до reviewStep: собирает различные user_id, которых ещё нет в базе,
+ * хеширует пароли параллельно на всех ядрах и вставляет пачками. reviewProcessor после этого
+ * не создаёт пользователей и не вызывает BCrypt.
+ * <p>
+ * Имя User&lt;id&gt; может быть уже занято другим id (например, пользователем, зарегистрированным через API):
+ * такой пользователь не создаётся и считается пропущенным, а его оценки reviewProcessor отфильтрует.
+ */
+public class UserProvisioningTasklet implements Tasklet {
+
+    private static final Logger log = LoggerFactory.getLogger(UserProvisioningTasklet.class);
+
+    /**
+     * Возвращает id, на которые можно ссылаться: вставленные (inserted) и появившиеся с тем же id
+     * после поиска ссылок. EXISTS видит таблицу до вставки этого же запроса.
+     */
+    private static final String INSERT_USERS = """
+            WITH candidates AS (
+                SELECT * FROM unnest(?::bigint[], ?::varchar[], ?::varchar[]) AS c(id, username, password)
+            ), inserted AS (
+                INSERT INTO users (id, username, password)
+                SELECT id, username, password FROM candidates
+                ON CONFLICT DO NOTHING
+                RETURNING id
+            )
+            SELECT c.id, i.id IS NOT NULL AS inserted
+            FROM candidates c
+            LEFT JOIN inserted i ON i.id = c.id
+            WHERE i.id IS NOT NULL OR EXISTS (SELECT 1 FROM users u WHERE u.id = c.id)
+            """;
+
+    private static final String INSERT_USER_ROLE = """
+            INSERT INTO user_roles (user_id, role_id) VALUES (?, ?)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String SYNC_USER_SEQUENCE = """
+            SELECT setval(pg_get_serial_sequence('users', 'id'), GREATEST((SELECT MAX(id) FROM users), 1))
+            """;
+
+    private final Path reviewInput;
+
+    private final ImportReferences importReferences;
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final RoleRepository roleRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int batchSize;
+
+    public UserProvisioningTasklet(Path reviewInput, ImportReferences importReferences,
+                                   PasswordEncoder passwordEncoder, RoleRepository roleRepository,
+                                   DataSource dataSource, int batchSize) {
+        this.reviewInput = reviewInput;
+        this.importReferences = importReferences;
+        this.passwordEncoder = passwordEncoder;
+        this.roleRepository = roleRepository;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public RepeatStatus execute(@NonNull StepContribution contribution, @NonNull ChunkContext chunkContext)
+            throws IOException, ExecutionException, InterruptedException {
+        long[] newUserIds = collectNewUserIds();
+        Role userRole = roleRepository.findByName("USER")
+                .orElseThrow(() -> new RuntimeException("Error: Role is not found."));
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        long inserted = 0;
+        long skipped = 0;
+        try {
+            for (int from = 0; from < newUserIds.length; from += batchSize) {
+                int to = Math.min(from + batchSize, newUserIds.length);
+                String[] passwords = hashPasswords(pool, newUserIds, from, to);
+                Batch batch = insertUsers(newUserIds, passwords, userRole, from, to);
+                inserted += batch.inserted();
+                skipped += batch.skipped();
+                contribution.incrementWriteCount(batch.inserted());
+                for (int i = 0; i < batch.skipped(); i++) {
+                    contribution.incrementWriteSkipCount();
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        if (inserted > 0) {
+            jdbcTemplate.execute(SYNC_USER_SEQUENCE);
+        }
+        if (skipped > 0) {
+            log.warn("Skipped {} users whose username is taken by another user", skipped);
+        }
+        log.info("Provisioned {} users referenced by {}", inserted, reviewInput);
+        return RepeatStatus.FINISHED;
+    }
+
+    /**
+     * user_id из строк с известной книгой - остальные строки reviewProcessor всё равно отфильтрует
+     */
+    private long[] collectNewUserIds() throws IOException {
+        LongHashSet newUserIds = new LongHashSet();
+        int malformed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(reviewInput, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while ((line = reader.readLine()) != null) {
+                int firstComma = line.indexOf(',');
+                int secondComma = line.indexOf(',', firstComma + 1);
+                if (firstComma <= 0 || secondComma < 0) {
+                    malformed++;
+                    continue;
+                }
+                long bookId = Long.parseLong(line, 0, firstComma, 10);
+                long userId = Long.parseLong(line, firstComma + 1, secondComma, 10);
+                if (importReferences.containsBook(bookId) && !importReferences.containsUser(userId)) {
+                    newUserIds.add(userId);
+                }
+            }
+        }
+        if (malformed > 0) {
+            log.warn("Skipped {} malformed lines in {}", malformed, reviewInput);
+        }
+
+        long[] ids = new long[newUserIds.size()];
+        int[] position = {0};
+        newUserIds.forEach(id -> ids[position[0]++] = id);
+        return ids;
+    }
+
+    private String[] hashPasswords(ForkJoinPool pool, long[] userIds, int from, int to)
+            throws ExecutionException, InterruptedException {
+        String[] passwords = new String[to - from];
+        pool.submit(() -> IntStream.range(from, to).parallel()
+                        .forEach(i -> passwords[i - from] = passwordEncoder.encode(String.valueOf(userIds[i]))))
+                .get();
+        return passwords;
+    }
+
+    /**
+     * Роль получают только вставленные пользователи, в ссылки попадают все, на кого можно сослаться
+     */
+    private Batch insertUsers(long[] userIds, String[] passwords, Role userRole, int from, int to) {
+        Long[] ids = new Long[to - from];
+        String[] usernames = new String[to - from];
+        for (int i = from; i < to; i++) {
+            ids[i - from] = userIds[i];
+            usernames[i - from] = "User" + userIds[i];
+        }
+        List<Object[]> roles = new ArrayList<>(to - from);
+        int[] referenced = {0};
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_USERS)) {
+                statement.setArray(1, connection.createArrayOf("bigint", ids));
+                statement.setArray(2, connection.createArrayOf("varchar", usernames));
+                statement.setArray(3, connection.createArrayOf("varchar", passwords));
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        long id = rs.getLong(1);
+                        importReferences.addUser(id);
+                        referenced[0]++;
+                        if (rs.getBoolean(2)) {
+                            roles.add(new Object[]{id, userRole.getId()});
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+        jdbcTemplate.batchUpdate(INSERT_USER_ROLE, roles);
+        return new Batch(roles.size(), to - from - referenced[0]);
+    }
+
+    private record Batch(int inserted, int skipped) {
+    }
+}
@@ -8,41 +8,79 @@ import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobExecutionListener;
-import org.springframework.batch.core.JobParameters;
-import org.springframework.batch.core.JobParametersBuilder;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.job.builder.SimpleJobBuilder;
 import org.springframework.batch.core.launch.JobLauncher;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.step.builder.StepBuilder;
 import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.JpaItemWriter;
+import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
 import org.springframework.batch.item.file.FlatFileItemReader;
 import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
 import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.propertyeditors.CustomNumberEditor;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.transaction.PlatformTransactionManager;
-import org.springframework.util.StringUtils;
+import ru.liga.book.batch.BookCsvProcessor;
+import ru.liga.book.batch.ByteRangePartitioner;
+import ru.liga.book.batch.DeltaDeleteTasklet;
+import ru.liga.book.batch.DeltaIndex;
+import ru.liga.book.batch.DeltaLookupTasklet;
+import ru.liga.book.batch.DeltaState;
+import ru.liga.book.batch.FileRangeResource;
+import ru.liga.book.batch.ImportFinishedEvent;
+import ru.liga.book.batch.ImportReferences;
+import ru.liga.book.batch.ImportSql;
+import ru.liga.book.batch.InputRowsTasklet;
+import ru.liga.book.batch.IsbnClaims;
+import ru.liga.book.batch.IsbnLookupTasklet;
+import ru.liga.book.batch.LoadMode;
+import ru.liga.book.batch.MappedBookCsvReader;
+import ru.liga.book.batch.PgCopyItemWriter;
+import ru.liga.book.batch.ReferenceLookupTasklet;
+import ru.liga.book.batch.ReviewClaims;
+import ru.liga.book.batch.RowHashes;
+import ru.liga.book.batch.SqlTasklet;
+import ru.liga.book.batch.StepThroughputListener;
+import ru.liga.book.batch.UserProvisioningTasklet;
+import ru.liga.book.exception.ImportAlreadyRunningException;
+import ru.liga.book.exception.SimilarityAlreadyRunningException;
 import ru.liga.book.model.Book;
 import ru.liga.book.model.BookCsv;
 import ru.liga.book.model.Review;
 import ru.liga.book.model.ReviewCsv;
-import ru.liga.book.model.Role;
-import ru.liga.book.model.User;
 import ru.liga.book.repository.BookRepository;
 import ru.liga.book.repository.RoleRepository;
 import ru.liga.book.repository.UserRepository;
-
+import ru.liga.book.service.ImportJobService;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Optional;
+import java.util.List;
 
 /**
  * Чтобы загрузить все файлы как надо, нужно отключить генерацию Id поля у Book и User
@@ -63,6 +101,39 @@ public class BatchConfiguration {
     @Value("${spring.file.review-input}")
     private String reviewInput;
 
+    @Value("${spring.file.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${spring.file.load-mode:jdbc}")
+    private LoadMode loadMode;
+
+    /**
+     * Больше 1 - bookStep и reviewStep делятся на столько диапазонов строк, которые обрабатываются параллельно
+     */
+    @Value("${spring.file.partitions:1}")
+    private int partitions;
+
+    @Value("${spring.file.threads:4}")
+    private int threads;
+
+    /**
+     * true - {@link MappedBookCsvReader} вместо FlatFileItemReader для файла книг
+     */
+    @Value("${spring.file.mapped-reader:true}")
+    private boolean mappedReader;
+
+    /**
+     * true - загружаются только новые и изменённые строки (по row_hash), запись через upsert
+     */
+    @Value("${spring.file.delta:false}")
+    private boolean delta;
+
+    /**
+     * Вместе с delta: удалять импортированные ранее строки, которых нет в новых файлах
+     */
+    @Value("${spring.file.delta-delete:false}")
+    private boolean deltaDelete;
+
     private final PasswordEncoder passwordEncoder;
 
     private final BookRepository bookRepository;
@@ -71,8 +142,35 @@ public class BatchConfiguration {
 
     private final EntityManagerFactory entityManagerFactory;
 
+    private final DataSource dataSource;
+
+    private final PlatformTransactionManager transactionManager;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Bean
+    public AbstractItemCountingItemStreamItemReader<BookCsv> bookReader() {
+        if (mappedReader) {
+            return new MappedBookCsvReader(Path.of(bookInput));
+        }
+        return bookReaderBuilder().build();
+    }
+
     @Bean
-    public FlatFileItemReader<BookCsv> bookReader() {
+    @StepScope
+    public AbstractItemCountingItemStreamItemReader<BookCsv> bookPartitionReader(
+            @Value("#{stepExecutionContext['" + ByteRangePartitioner.START_OFFSET + "']}") Long startOffset,
+            @Value("#{stepExecutionContext['" + ByteRangePartitioner.END_OFFSET + "']}") Long endOffset) {
+        if (mappedReader) {
+            return new MappedBookCsvReader(Path.of(bookInput), startOffset, endOffset);
+        }
+        return bookReaderBuilder()
+                .resource(new FileRangeResource(Path.of(bookInput), startOffset, endOffset))
+                .linesToSkip(startOffset == 0 ? 1 : 0)
+                .build();
+    }
+
+    private FlatFileItemReaderBuilder<BookCsv> bookReaderBuilder() {
         return new FlatFileItemReaderBuilder<BookCsv>()
                 .name("BookItemReader")
                 .resource(new FileSystemResource(bookInput))
@@ -84,8 +182,7 @@ public class BatchConfiguration {
                         "ratings_1", "ratings_2", "ratings_3", "ratings_4", "ratings_5",
                         "image_url", "small_image_url")
                 .linesToSkip(1)
-                .fieldSetMapper(getFieldSetMapper())
-                .build();
+                .fieldSetMapper(getFieldSetMapper());
     }
 
     private BeanWrapperFieldSetMapper<BookCsv> getFieldSetMapper() {
@@ -106,69 +203,78 @@ public class BatchConfiguration {
     }
 
     @Bean
-    public JpaItemWriter<Book> writer() {
-        JpaItemWriter<Book> writer = new JpaItemWriter<>();
-        writer.setEntityManagerFactory(entityManagerFactory);
-        return writer;
+    public ItemWriter<Book> writer() {
+        if (delta) {
+            return new JdbcBatchItemWriterBuilder<Book>()
+                    .dataSource(dataSource)
+                    .sql(ImportSql.UPSERT_BOOK)
+                    .beanMapped()
+                    .build();
+        }
+        if (loadMode == LoadMode.JPA) {
+            JpaItemWriter<Book> writer = new JpaItemWriter<>();
+            writer.setEntityManagerFactory(entityManagerFactory);
+            return writer;
+        }
+        if (loadMode == LoadMode.COPY) {
+            return new PgCopyItemWriter<>(dataSource, ImportSql.COPY_BOOKS, ImportSql::bookRow);
+        }
+        return new JdbcBatchItemWriterBuilder<Book>()
+                .dataSource(dataSource)
+                .sql(ImportSql.INSERT_BOOK)
+                .beanMapped()
+                .build();
     }
 
     @Bean
-    public Step bookStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
-                         JpaItemWriter<Book> writer) {
+    public StepThroughputListener stepThroughputListener() {
+        return new StepThroughputListener();
+    }
+
+    @Bean
+    public Step bookStep(JobRepository jobRepository, ItemWriter<Book> writer) {
+        if (partitions > 1) {
+            Step worker = new StepBuilder("bookWorkerStep", jobRepository)
+                    .<BookCsv, Book>chunk(chunkSize, transactionManager)
+                    .reader(bookPartitionReader(null, null))
+                    .processor(processor())
+                    .writer(writer)
+                    .listener(stepThroughputListener())
+                    .build();
+            return partitionedStep("bookStep", jobRepository, worker, bookInput);
+        }
         return new StepBuilder("bookStep", jobRepository)
-                .<BookCsv, Book>chunk(1, transactionManager)
+                .<BookCsv, Book>chunk(chunkSize, transactionManager)
                 .reader(bookReader())
                 .processor(processor())
                 .writer(writer)
+                .listener(stepThroughputListener())
                 .build();
     }
 
-    @Bean
-    public ItemProcessor<BookCsv, Book> processor() {
-        return bookCsv -> {
-            long bookId = bookCsv.getBookId();
-
-            Optional<String> isbn = Optional.ofNullable(bookCsv.getIsbn()).filter(StringUtils::hasText);
-            Optional<Double> isbn13 = parseDoubleOrZero(String.valueOf(bookCsv.getIsbn13()));
-            Optional<String> name = Optional.ofNullable(bookCsv.getAuthors()).filter(StringUtils::hasText);
-            Optional<Double> originalPublicationYear = parseDoubleOrZero(String.valueOf(bookCsv
-                    .getOriginalPublicationYear()));
-            Optional<String> originalTitle = Optional.ofNullable(bookCsv.getOriginalTitle())
-                    .filter(StringUtils::hasText);
-            Optional<String> title = Optional.ofNullable(bookCsv.getTitle()).filter(StringUtils::hasText);
-            Optional<String> langCode = Optional.ofNullable(bookCsv.getLanguageCode()).filter(StringUtils::hasText);
-            Optional<String> imageUrl = Optional.ofNullable(bookCsv.getImageUrl()).filter(StringUtils::hasText);
-            Optional<String> smallImageUrl = Optional.ofNullable(bookCsv.getSmallImageUrl())
-                    .filter(StringUtils::hasText);
-            Optional<Integer> ratingCount = Optional.ofNullable(bookCsv.getRatingsCount());
-            Optional<Double> ratingAvg = parseDoubleOrZero(String.valueOf(bookCsv.getAverageRating()));
-
-            return Book.builder()
-                    .id(bookId)
-                    .isbn(isbn.orElse(null))
-                    .isbn13(isbn13.orElse(0.0))
-                    .name(name.orElse(null))
-                    .originalPublicationYear(originalPublicationYear.orElse(0.0))
-                    .originalTitle(originalTitle.orElse(null))
-                    .title(title.orElse(null))
-                    .langCode(langCode.orElse(null))
-                    .imageUrl(imageUrl.orElse(null))
-                    .smallImageUrl(smallImageUrl.orElse(null))
-                    .ratingCount(ratingCount.orElse(0))
-                    .ratingAvg(ratingAvg.orElse(0.0))
-                    .build();
-        };
+    private Step partitionedStep(String name, JobRepository jobRepository, Step worker, String input) {
+        return new StepBuilder(name, jobRepository)
+                .partitioner(worker.getName(), new ByteRangePartitioner(Path.of(input)))
+                .step(worker)
+                .gridSize(partitions)
+                .taskExecutor(importTaskExecutor())
+                .listener(stepThroughputListener())
+                .build();
     }
 
-    private Optional<Double> parseDoubleOrZero(String stringValue) {
-        try {
-            return Optional.ofNullable(stringValue)
-                    .filter(str -> !str.trim().equalsIgnoreCase("null") && StringUtils.hasText(str))
-                    .map(Double::parseDouble);
-        } catch (NumberFormatException e) {
-            log.error("Cannot parse to number: {}", stringValue, e);
-            return Optional.of(0.0);
-        }
+    /**
+     * Не бин: собственный ThreadPoolTaskExecutor в контексте отключил бы applicationTaskExecutor Spring Boot
+     */
+    private TaskExecutor importTaskExecutor() {
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("import-");
+        taskExecutor.setConcurrencyLimit(threads);
+        return taskExecutor;
+    }
+
+    @Bean
+    @StepScope
+    public BookCsvProcessor processor() {
+        return new BookCsvProcessor(delta ? deltaState() : null, isbnClaims());
     }
 
     @Bean
@@ -181,23 +287,158 @@ public class BatchConfiguration {
 
             @Override
             public void afterJob(@NonNull JobExecution jobExecution) {
+                importReferences().clear();
+                deltaState().clear();
+                isbnClaims().clear();
+                reviewClaims().clear();
+                if (jobExecution.getStartTime() != null) {
+                    new JdbcTemplate(dataSource).update(ImportSql.TOUCH_BOOK_REVIEWS,
+                            Timestamp.valueOf(jobExecution.getStartTime()));
+                }
+                eventPublisher.publishEvent(new ImportFinishedEvent(jobExecution.getId(), jobExecution.getStatus()));
                 log.info("After job execution: {}", jobExecution.getStatus());
             }
         };
     }
 
     @Bean
-    public CommandLineRunner importBooksRunner(JobLauncher jobLauncher, Job importBookJob) {
+    public ImportReferences importReferences() {
+        return new ImportReferences();
+    }
+
+    @Bean
+    public DeltaState deltaState() {
+        return new DeltaState();
+    }
+
+    @Bean
+    public IsbnClaims isbnClaims() {
+        return new IsbnClaims();
+    }
+
+    @Bean
+    public ReviewClaims reviewClaims() {
+        return new ReviewClaims();
+    }
+
+    @Bean
+    public Step inputRowsStep(JobRepository jobRepository) {
+        return new StepBuilder("inputRowsStep", jobRepository)
+                .tasklet(new InputRowsTasklet(Path.of(bookInput), Path.of(reviewInput)), transactionManager)
+                .build();
+    }
+
+    @Bean
+    public Step isbnLookupStep(JobRepository jobRepository) {
+        return new StepBuilder("isbnLookupStep", jobRepository)
+                .tasklet(new IsbnLookupTasklet(dataSource, isbnClaims()), transactionManager)
+                .build();
+    }
+
+    @Bean
+    public Step bookSequenceStep(JobRepository jobRepository) {
+        return new StepBuilder("bookSequenceStep", jobRepository)
+                .tasklet((contribution, chunkContext) -> {
+                    new JdbcTemplate(dataSource).execute(ImportSql.SYNC_BOOK_SEQUENCE);
+                    return RepeatStatus.FINISHED;
+                }, transactionManager)
+                .build();
+    }
+
+    @Bean
+    public Step deltaLookupStep(JobRepository jobRepository) {
+        return new StepBuilder("deltaLookupStep", jobRepository)
+                .tasklet(new DeltaLookupTasklet(dataSource, deltaState()), transactionManager)
+                .build();
+    }
+
+    /**
+     * Сначала отзывы, пропавшие из файла оценок, затем пропавшие книги вместе с импортированными отзывами;
+     * книга с отзывами из API остаётся
+     */
+    private List<Step> deltaDeleteSteps(JobRepository jobRepository) {
+        DeltaState state = deltaState();
+        DeltaDeleteTasklet reviews = new DeltaDeleteTasklet(dataSource, state::reviews,
+                key -> new Object[]{DeltaIndex.bookIdOf(key), DeltaIndex.userIdOf(key)},
+                chunkSize, ImportSql.DELETE_REVIEW);
+        DeltaDeleteTasklet books = new DeltaDeleteTasklet(dataSource, state::books,
+                id -> new Object[]{id},
+                chunkSize, ImportSql.DELETE_BOOK_REVIEWS, ImportSql.DELETE_BOOK);
+        return List.of(
+                new StepBuilder("reviewDeleteStep", jobRepository)
+                        .tasklet(reviews, transactionManager)
+                        .listener(stepThroughputListener())
+                        .build(),
+                new StepBuilder("bookDeleteStep", jobRepository)
+                        .tasklet(books, transactionManager)
+                        .listener(stepThroughputListener())
+                        .build());
+    }
+
+    @Bean
+    public Step referenceLookupStep(JobRepository jobRepository) {
+        return new StepBuilder("referenceLookupStep", jobRepository)
+                .tasklet(new ReferenceLookupTasklet(dataSource, importReferences()), transactionManager)
+                .build();
+    }
+
+    @Bean
+    public Step userProvisioningStep(JobRepository jobRepository) {
+        UserProvisioningTasklet tasklet = new UserProvisioningTasklet(Path.of(reviewInput), importReferences(),
+                passwordEncoder, roleRepository, dataSource, chunkSize);
+        return new StepBuilder("userProvisioningStep", jobRepository)
+                .tasklet(tasklet, transactionManager)
+                .listener(stepThroughputListener())
+                .build();
+    }
+
+    /**
+     * Запускает importJob в отдельном потоке: run() сразу возвращает JobExecution в статусе STARTING
+     */
+    @Bean
+    public JobLauncher asyncJobLauncher(JobRepository jobRepository) throws Exception {
+        TaskExecutorJobLauncher jobLauncher = new TaskExecutorJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.setTaskExecutor(new SimpleAsyncTaskExecutor("import-job-"));
+        jobLauncher.afterPropertiesSet();
+        return jobLauncher;
+    }
+
+    /**
+     * Импорт при старте не блокирует запуск приложения; выключается spring.file.import-on-startup=false,
+     * тогда импорт запускается через POST /api/admin/imports. Выполнение, брошенное упавшим процессом,
+     * помечается FAILED при запуске, а уже идущий импорт запуск пропускает - приложение стартует в любом случае.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "spring.file.import-on-startup", havingValue = "true", matchIfMissing = true)
+    public CommandLineRunner importBooksRunner(ImportJobService importJobService) {
         return args -> {
-            JobParameters jobParameters = new JobParametersBuilder()
-                    .addLong("time", System.currentTimeMillis())
-                    .toJobParameters();
-            jobLauncher.run(importBookJob, jobParameters);
+            try {
+                importJobService.startImport();
+            } catch (ImportAlreadyRunningException | SimilarityAlreadyRunningException e) {
+                log.warn("Import on startup skipped: {}", e.getMessage());
+            }
         };
     }
 
+
     @Bean
     public FlatFileItemReader<ReviewCsv> reviewReader() {
+        return reviewReaderBuilder().build();
+    }
+
+    @Bean
+    @StepScope
+    public FlatFileItemReader<ReviewCsv> reviewPartitionReader(
+            @Value("#{stepExecutionContext['" + ByteRangePartitioner.START_OFFSET + "']}") Long startOffset,
+            @Value("#{stepExecutionContext['" + ByteRangePartitioner.END_OFFSET + "']}") Long endOffset) {
+        return reviewReaderBuilder()
+                .resource(new FileRangeResource(Path.of(reviewInput), startOffset, endOffset))
+                .linesToSkip(startOffset == 0 ? 1 : 0)
+                .build();
+    }
+
+    private FlatFileItemReaderBuilder<ReviewCsv> reviewReaderBuilder() {
         BeanWrapperFieldSetMapper<ReviewCsv> fieldSetMapper = new BeanWrapperFieldSetMapper<>();
         fieldSetMapper.setTargetType(ReviewCsv.class);
 
@@ -207,67 +448,155 @@ public class BatchConfiguration {
                 .delimited()
                 .names("book_id", "user_id", "rating")
                 .fieldSetMapper(fieldSetMapper)
-                .linesToSkip(1)
-                .build();
+                .linesToSkip(1);
     }
 
     @Bean
-    public JpaItemWriter<Review> reviewWriter() {
-        JpaItemWriter<Review> writer = new JpaItemWriter<>();
-        writer.setEntityManagerFactory(entityManagerFactory);
-        return writer;
+    public ItemWriter<Review> reviewWriter() {
+        if (delta) {
+            return new JdbcBatchItemWriterBuilder<Review>()
+                    .dataSource(dataSource)
+                    .sql(ImportSql.UPSERT_REVIEW)
+                    .itemPreparedStatementSetter(BatchConfiguration::setReviewValues)
+                    .build();
+        }
+        if (loadMode == LoadMode.JPA) {
+            JpaItemWriter<Review> writer = new JpaItemWriter<>();
+            writer.setEntityManagerFactory(entityManagerFactory);
+            return writer;
+        }
+        if (loadMode == LoadMode.COPY) {
+            return new PgCopyItemWriter<>(dataSource, ImportSql.COPY_REVIEWS, ImportSql::reviewRow);
+        }
+        return new JdbcBatchItemWriterBuilder<Review>()
+                .dataSource(dataSource)
+                .sql(ImportSql.INSERT_REVIEW)
+                .itemPreparedStatementSetter(BatchConfiguration::setReviewValues)
+                .build();
+    }
+
+    private static void setReviewValues(Review review, PreparedStatement ps) throws SQLException {
+        ps.setLong(1, review.getBook().getId());
+        ps.setLong(2, review.getUser().getId());
+        ps.setString(3, review.getComment());
+        ps.setObject(4, review.getRating());
+        ps.setObject(5, review.getRowHash());
     }
 
     @Bean
-    public Step reviewStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
-                           JpaItemWriter<Review> reviewWriter) {
+    public Step reviewStep(JobRepository jobRepository, ItemWriter<Review> reviewWriter) {
+        if (partitions > 1) {
+            Step worker = new StepBuilder("reviewWorkerStep", jobRepository)
+                    .<ReviewCsv, Review>chunk(chunkSize, transactionManager)
+                    .reader(reviewPartitionReader(null, null))
+                    .processor(reviewProcessor())
+                    .writer(reviewWriter)
+                    .listener(stepThroughputListener())
+                    .build();
+            return partitionedStep("reviewStep", jobRepository, worker, reviewInput);
+        }
         return new StepBuilder("reviewStep", jobRepository)
-                .<ReviewCsv, Review>chunk(1, transactionManager)
+                .<ReviewCsv, Review>chunk(chunkSize, transactionManager)
                 .reader(reviewReader())
                 .processor(reviewProcessor())
                 .writer(reviewWriter)
+                .listener(stepThroughputListener())
                 .build();
     }
 
+    /**
+     * В режиме delta COPY не используется: изменённые строки пишутся upsert'ом через JDBC
+     */
     @Bean
     public Job importJob(JobRepository jobRepository, JobExecutionListener listener, Step bookStep,
-                         Step reviewStep) {
-        return new JobBuilder("importJob", jobRepository)
+                         Step referenceLookupStep, Step userProvisioningStep, Step reviewStep) {
+        boolean copy = loadMode == LoadMode.COPY && !delta;
+        List<Step> steps = new ArrayList<>();
+        steps.add(inputRowsStep(jobRepository));
+        if (delta) {
+            steps.add(deltaLookupStep(jobRepository));
+        }
+        steps.add(isbnLookupStep(jobRepository));
+        if (copy) {
+            steps.add(sqlStep("stagingPrepareStep", jobRepository,
+                    ImportSql.TRUNCATE_BOOKS_STAGING, ImportSql.TRUNCATE_REVIEWS_STAGING));
+        }
+        steps.add(bookStep);
+        if (copy) {
+            steps.add(sqlStep("bookMergeStep", jobRepository,
+                    ImportSql.MERGE_BOOKS, ImportSql.TRUNCATE_BOOKS_STAGING));
+        }
+        steps.add(bookSequenceStep(jobRepository));
+        steps.add(referenceLookupStep);
+        steps.add(userProvisioningStep);
+        steps.add(reviewStep);
+        if (copy) {
+            steps.add(sqlStep("reviewMergeStep", jobRepository,
+                    ImportSql.MERGE_REVIEWS, ImportSql.TRUNCATE_REVIEWS_STAGING));
+        }
+        if (delta && deltaDelete) {
+            steps.addAll(deltaDeleteSteps(jobRepository));
+        }
+
+        SimpleJobBuilder job = new JobBuilder("importJob", jobRepository)
                 .incrementer(new RunIdIncrementer())
                 .listener(listener)
-                .start(bookStep)
-                .next(reviewStep)
+                .start(steps.get(0));
+        for (Step step : steps.subList(1, steps.size())) {
+            job.next(step);
+        }
+        return job.build();
+    }
+
+    private Step sqlStep(String name, JobRepository jobRepository, String... statements) {
+        return new StepBuilder(name, jobRepository)
+                .tasklet(new SqlTasklet(dataSource, statements), transactionManager)
+                .listener(stepThroughputListener())
                 .build();
     }
 
     @Bean
     public ItemProcessor<ReviewCsv, Review> reviewProcessor() {
+        ImportReferences references = importReferences();
+        DeltaState state = delta ? deltaState() : null;
+        ReviewClaims claims = reviewClaims();
         return reviewCsv -> {
-            Optional<Book> bookOptional = bookRepository.findById(reviewCsv.getBookId());
-            if (bookOptional.isEmpty()) {
+            if (!references.containsBook(reviewCsv.getBookId())) {
+
+                return null;
+            }
 
+            if (!references.containsUser(reviewCsv.getUserId())) {
+                log.warn("User {} was not provisioned, skipping rating of book {}",
+                        reviewCsv.getUserId(), reviewCsv.getBookId());
                 return null;
             }
 
-            User user = userRepository.findById(reviewCsv.getUserId())
-                    .orElseGet(() -> {
-                        User newUser = User.builder()
-                                .id(reviewCsv.getUserId())
-                                .username("User" + reviewCsv.getUserId())
-                                .password(passwordEncoder.encode(String.valueOf(reviewCsv.getUserId())))
-                                .build();
-                        Role userRole = roleRepository.findByName("USER")
-                                .orElseThrow(() -> new RuntimeException("Error: Role is not found."));
-                        newUser.setRoles(Collections.singleton(userRole));
-                        return userRepository.save(newUser);
-                    });
+            if (!claims.claim(reviewCsv.getBookId(), reviewCsv.getUserId())) {
+                log.warn("Duplicate rating of book {} by user {}, keeping the first one",
+                        reviewCsv.getBookId(), reviewCsv.getUserId());
+                return null;
+            }
 
             Review review = new Review();
-            review.setBook(bookOptional.get());
-            review.setUser(user);
+            review.setBook(bookRepository.getReferenceById(reviewCsv.getBookId()));
+            review.setUser(userRepository.getReferenceById(reviewCsv.getUserId()));
             review.setRating(reviewCsv.getRating());
+            if (loadMode != LoadMode.JPA || delta) {
+                // JpaItemWriter не умеет ON CONFLICT: без хеша повторная оценка не упрётся в уникальный индекс
+                review.setRowHash(RowHashes.review(review));
+            }
+            if (state != null && !DeltaIndex.fitsReviewKey(reviewCsv.getBookId(), reviewCsv.getUserId())) {
+                log.warn("Rating of book {} by user {} does not fit the delta index, skipping it",
+                        reviewCsv.getBookId(), reviewCsv.getUserId());
+                return null;
+            }
+            if (state != null && state.reviews().markAndCheckUnchanged(
+                    DeltaIndex.reviewKey(reviewCsv.getBookId(), reviewCsv.getUserId()), review.getRowHash())) {
+                return null;
+            }
             return review;
         };
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,63 @@
+package ru.liga.book.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.liga.book.batch.BookSimilarityTasklet;
+
+import javax.sql.DataSource;
+
+/**
+ * similarityJob: похожие книги по оценкам читателей ("читатели, которым понравилась эта книга,
+ * оценили и ..."). Запускается отдельно от importJob через POST /api/admin/similarity.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class SimilarityConfiguration {
+
+    private final DataSource dataSource;
+
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${application.similarity.neighbours:20}")
+    private int neighbours;
+
+    @Value("${application.similarity.min-common-users:5}")
+    private int minCommonUsers;
+
+    /**
+     * Читатели, оценившие больше книг, в сходство не входят
+     */
+    @Value("${application.similarity.max-user-ratings:5000}")
+    private int maxUserRatings;
+
+    /**
+     * Потоков расчёта; 0 - по числу процессоров
+     */
+    @Value("${application.similarity.parallelism:0}")
+    private int parallelism;
+
+    @Bean
+    public Step similarityStep(JobRepository jobRepository) {
+        return new StepBuilder("similarityStep", jobRepository)
+                .tasklet(new BookSimilarityTasklet(dataSource, neighbours, minCommonUsers, maxUserRatings, parallelism),
+                        transactionManager)
+                .build();
+    }
+
+    @Bean
+    public Job similarityJob(JobRepository jobRepository, Step similarityStep) {
+        return new JobBuilder("similarityJob", jobRepository)
+                .incrementer(new RunIdIncrementer())
+                .start(similarityStep)
+                .build();
+    }
+}
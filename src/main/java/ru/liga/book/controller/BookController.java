@@ -1,14 +1,17 @@
 package ru.liga.book.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.RequiredArgsConstructor;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -17,11 +20,32 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.liga.book.dto.BookBatch;
+import ru.liga.book.dto.BookCard;
+import ru.liga.book.dto.BookFacets;
+import ru.liga.book.dto.BookFilter;
+import ru.liga.book.dto.BookSuggestion;
+import ru.liga.book.dto.BookSummary;
+import ru.liga.book.dto.CursorPage;
+import ru.liga.book.dto.ExportFormat;
+import ru.liga.book.dto.FacetFilter;
+import ru.liga.book.dto.IsbnLookup;
+import ru.liga.book.dto.LeaderboardMetric;
+import ru.liga.book.dto.Revision;
+import ru.liga.book.dto.SearchPage;
+import ru.liga.book.dto.SimilarBook;
+import ru.liga.book.dto.SimilarityMetric;
 import ru.liga.book.model.Book;
 import ru.liga.book.service.BookService;
+import ru.liga.book.service.CatalogExportService;
+
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/books")
@@ -30,34 +54,97 @@ public class BookController {
 
     private final BookService bookService;
 
-    @Operation(summary = "Get all books")
+    private final CatalogExportService catalogExportService;
+
+    @Operation(summary = "Get books matching optional filters",
+            description = "Filters: langCode, yearFrom, yearTo, minRatingAvg, minRatingCount, author (substring). "
+                    + "Sort by id, title, name, originalPublicationYear, ratingAvg or ratingCount")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Found the books",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = Page.class))}),
+            @ApiResponse(responseCode = "400", description = "Unsupported sort property or invalid year range"),
             @ApiResponse(responseCode = "401", description = "Unauthorized"),
             @ApiResponse(responseCode = "403", description = "Forbidden")
     })
     @GetMapping
-    public ResponseEntity<Page<Book>> getAllBooks(@PageableDefault Pageable pageable) {
-        return ResponseEntity.ok(bookService.findAllBooks(pageable));
+    public ResponseEntity<Page<BookSummary>> getAllBooks(@ParameterObject BookFilter filter,
+                                                         @ParameterObject @PageableDefault Pageable pageable) {
+        return ResponseEntity.ok(bookService.findAllBooks(filter, pageable));
     }
 
-    @Operation(summary = "Get a book by its ID")
+    @Operation(summary = "Count books per facet value",
+            description = "Facets: langCode, decade (e.g. 1990) and rating (r means average rating from r to r + 1). "
+                    + "Several values of one facet match any of them; counts of a facet ignore its own selection. "
+                    + "Computed from in-memory bitmap indexes")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Found the book",
-                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = Book.class))}),
+            @ApiResponse(responseCode = "200", description = "Facet counts",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = BookFacets.class))}),
+            @ApiResponse(responseCode = "400", description = "Decade is not a multiple of 10 or rating is out of range"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden")
+    })
+    @GetMapping("/facets")
+    public ResponseEntity<BookFacets> getFacets(@ParameterObject FacetFilter filter) {
+        return ResponseEntity.ok(bookService.findFacets(filter));
+    }
+
+    @Operation(summary = "Export the whole catalog",
+            description = "Streams all books ordered by ID as NDJSON (optionally with their reviews) or CSV "
+                    + "straight from a database cursor; gzip-compressed when the client accepts it")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Catalog stream"),
+            @ApiResponse(responseCode = "400", description = "Reviews requested in CSV format"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden")
+    })
+    @GetMapping("/export")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportBooks(
+            @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+            @RequestParam(defaultValue = "false") boolean reviews,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return ExportResponses.attachment("books", format, acceptEncoding,
+                gzip -> catalogExportService.exportBooks(format, reviews, gzip));
+    }
+
+    @Operation(summary = "Get a book by its ID",
+            description = "Supports If-None-Match and If-Modified-Since; ETag and Last-Modified describe the served "
+                    + "card, so 304 is answered from the card cache without touching the database")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found the book with its latest reviews",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = BookCard.class))}),
+            @ApiResponse(responseCode = "304", description = "Book and its reviews have not changed"),
             @ApiResponse(responseCode = "404", description = "Book not found"),
             @ApiResponse(responseCode = "401", description = "Unauthorized"),
             @ApiResponse(responseCode = "403", description = "Forbidden")
     })
     @GetMapping("/{id}")
-    public ResponseEntity<Book> getBookById(@PathVariable Long id) {
-        return bookService.findBookById(id)
-                .map(ResponseEntity::ok)
-                .orElseGet(() -> ResponseEntity.notFound().build());
+    public ResponseEntity<BookCard> getBookById(@PathVariable Long id, WebRequest request) {
+        BookCard card = bookService.findBookCard(id);
+        Revision revision = card.getRevision();
+        // ETag и Last-Modified checkNotModified ставит в ответ сам, при совпадении - вместе со статусом 304
+        if (request.checkNotModified(revision.getEtag(), revision.getLastModified().toEpochMilli())) {
+            return null;
+        }
+        return ResponseEntity.ok(card);
     }
 
-    @Operation(summary = "Create a new book")
+    @Operation(summary = "Get several books by ID in one request",
+            description = "Up to 500 IDs; books are returned in request order, unknown IDs are listed in 'missing'")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found books and missing IDs",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = BookBatch.class))}),
+            @ApiResponse(responseCode = "400", description = "Empty or too large list of IDs"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden")
+    })
+    @GetMapping("/batch")
+    public ResponseEntity<BookBatch> getBooksByIds(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(bookService.findBooksByIds(ids));
+    }
+
+    @Operation(summary = "Create a new book",
+            description = "ratingCount and ratingAvg are computed from the ratings1..ratings5 histogram")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Book created successfully",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = Book.class))}),
@@ -71,7 +158,8 @@ public class BookController {
         return ResponseEntity.ok(bookService.saveBook(book));
     }
 
-    @Operation(summary = "Update an existing book")
+    @Operation(summary = "Update an existing book",
+            description = "Rating aggregates are maintained from reviews and are not changed by this request")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Book updated successfully",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = Book.class))}),
@@ -101,32 +189,109 @@ public class BookController {
         return ResponseEntity.ok().build();
     }
 
-    @Operation(summary = "Find books by title containing a specific query")
+    @Operation(summary = "Full-text search of books",
+            description = "Matches words by prefix in title, original title and authors; the 1000 most rated "
+                    + "matches are ranked by relevance and counted. truncated = true means more books match "
+                    + "than were ranked, and totalElements counts only the ranked ones")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Found books containing the query in their title",
-                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = Page.class))}),
+            @ApiResponse(responseCode = "200", description = "Found books matching the query",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = SearchPage.class))}),
             @ApiResponse(responseCode = "401", description = "Unauthorized"),
             @ApiResponse(responseCode = "403", description = "Forbidden"),
+            @ApiResponse(responseCode = "400", description = "Query contains no words"),
             @ApiResponse(responseCode = "404", description = "No books found")
     })
     @GetMapping("/search")
-    public ResponseEntity<Page<Book>> findBooksByTitle(@RequestParam String title, @PageableDefault Pageable pageable) {
+    public ResponseEntity<SearchPage<BookSummary>> findBooksByTitle(@RequestParam String title, @PageableDefault Pageable pageable) {
         return ResponseEntity.ok(bookService.findBooksByTitle(title, pageable));
     }
 
+    @Operation(summary = "Autocomplete books by title or author prefix",
+            description = "Returns up to 'limit' (max 20) books with the most ratings")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Suggestions, most rated first",
+                    content = {@Content(mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = BookSuggestion.class)))}),
+            @ApiResponse(responseCode = "400", description = "Empty prefix or invalid limit"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden")
+    })
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<BookSuggestion>> autocomplete(@RequestParam String prefix,
+                                                             @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(bookService.autocomplete(prefix, limit));
+    }
+
+    @Operation(summary = "Get top rated or most rated books",
+            description = "Served from memory for the whole catalog, one language (langCode) or one publication "
+                    + "decade (decade, e.g. 1990). TOP_RATED only includes books with enough ratings. "
+                    + "Returns up to 'limit' (max 50) books")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Leaderboard, best first",
+                    content = {@Content(mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = BookSummary.class)))}),
+            @ApiResponse(responseCode = "400", description = "Both langCode and decade, invalid decade or limit"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden")
+    })
+    @GetMapping("/leaderboard")
+    public ResponseEntity<List<BookSummary>> getLeaderboard(
+            @RequestParam(defaultValue = "TOP_RATED") LeaderboardMetric metric,
+            @RequestParam(required = false) String langCode,
+            @RequestParam(required = false) Integer decade,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(bookService.findLeaderboard(metric, langCode, decade, limit));
+    }
+
+    @Operation(summary = "Get books liked by the same readers",
+            description = "Nearest neighbours by reader ratings (COSINE) or by shared readers (JACCARD), "
+                    + "as of the last similarityJob run. Returns up to 'limit' (max 50) books")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Similar books, most similar first; "
+                    + "empty until similarityJob has run",
+                    content = {@Content(mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = SimilarBook.class)))}),
+            @ApiResponse(responseCode = "404", description = "Book not found"),
+            @ApiResponse(responseCode = "400", description = "Invalid limit"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden")
+    })
+    @GetMapping("/{id}/similar")
+    public ResponseEntity<List<SimilarBook>> getSimilarBooks(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "COSINE") SimilarityMetric metric,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(bookService.findSimilarBooks(id, metric, limit));
+    }
+
     @Operation(summary = "Find books by ISBN")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Found books with the specific ISBN",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = Page.class))}),
+            @ApiResponse(responseCode = "400", description = "Not an ISBN-10 or ISBN-13"),
             @ApiResponse(responseCode = "401", description = "Unauthorized"),
             @ApiResponse(responseCode = "403", description = "Forbidden"),
             @ApiResponse(responseCode = "404", description = "No books found with the given ISBN")
     })
     @GetMapping("/isbn/{isbn}")
-    public ResponseEntity<Page<Book>> findBooksByIsbn(@PathVariable String isbn, @PageableDefault Pageable pageable) {
+    public ResponseEntity<Page<BookSummary>> findBooksByIsbn(@PathVariable String isbn, @PageableDefault Pageable pageable) {
         return ResponseEntity.ok(bookService.findBooksByIsbn(isbn, pageable));
     }
 
+    @Operation(summary = "Find books by a batch of ISBNs",
+            description = "Accepts up to 1000 ISBN-10 or ISBN-13 values in any notation; resolved with a single query")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Books keyed by the requested ISBN, plus not found and invalid ISBNs",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = IsbnLookup.class))}),
+            @ApiResponse(responseCode = "400", description = "Empty or too large batch"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden")
+    })
+    @PostMapping("/isbn/lookup")
+    public ResponseEntity<IsbnLookup> findBooksByIsbns(@RequestBody List<String> isbns) {
+        return ResponseEntity.ok(bookService.findBooksByIsbns(isbns));
+    }
+
     @Operation(summary = "Get all books sorted by title")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Books sorted by title",
@@ -135,10 +300,40 @@ public class BookController {
             @ApiResponse(responseCode = "403", description = "Forbidden")
     })
     @GetMapping("/sorted/title")
-    public ResponseEntity<Page<Book>> findAllBooksSortedByTitle(@PageableDefault(sort = "title") Pageable pageable) {
+    public ResponseEntity<Page<BookSummary>> findAllBooksSortedByTitle(@PageableDefault(sort = "title") Pageable pageable) {
         return ResponseEntity.ok(bookService.findAllBooksSortedByTitle(pageable));
     }
 
+    @Operation(summary = "Get books sorted by title, cursor paging",
+            description = "Pass nextCursor of the previous page as 'after'; books without title come last")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Books sorted by title",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = CursorPage.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or size"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden")
+    })
+    @GetMapping("/cursor/title")
+    public ResponseEntity<CursorPage<BookSummary>> findBooksByTitleAfter(@RequestParam(required = false) String after,
+                                                                         @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(bookService.findBooksByTitleAfter(after, size));
+    }
+
+    @Operation(summary = "Get books sorted by original publication year (newest first), cursor paging",
+            description = "Pass nextCursor of the previous page as 'after'; books without year come last")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Books sorted by original publication year",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = CursorPage.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or size"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden")
+    })
+    @GetMapping("/cursor/year")
+    public ResponseEntity<CursorPage<BookSummary>> findBooksByPublicationYearBefore(
+            @RequestParam(required = false) String after, @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(bookService.findBooksByPublicationYearBefore(after, size));
+    }
+
     @Operation(summary = "Get all books sorted by original publication year")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Books sorted by original publication year",
@@ -147,7 +342,7 @@ public class BookController {
             @ApiResponse(responseCode = "403", description = "Forbidden")
     })
     @GetMapping("/sorted/year")
-    public ResponseEntity<Page<Book>> findAllBooksSortedByPublicationYear(@PageableDefault(sort = "originalPublicationYear", direction = org.springframework.data.domain.Sort.Direction.DESC) Pageable pageable) {
+    public ResponseEntity<Page<BookSummary>> findAllBooksSortedByPublicationYear(@PageableDefault(sort = "originalPublicationYear", direction = org.springframework.data.domain.Sort.Direction.DESC) Pageable pageable) {
         return ResponseEntity.ok(bookService.findAllBooksSortedByPublicationYear(pageable));
     }
 }
\ No newline at end of file
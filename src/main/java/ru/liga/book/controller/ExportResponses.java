@@ -0,0 +1,84 @@
+package ru.liga.book.controller;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.liga.book.dto.ExportFormat;
+
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Ответ с выгрузкой: вложение с именем файла, сжатое gzip, если клиент его принимает
+ */
+final class ExportResponses {
+
+    private static final String GZIP = "gzip";
+
+    private ExportResponses() {
+    }
+
+    /**
+     * @param body поток выгрузки; аргумент - сжимать ли его
+     */
+    static ResponseEntity<StreamingResponseBody> attachment(String fileName, ExportFormat format, String acceptEncoding,
+                                                            Function<Boolean, StreamingResponseBody> body) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.contentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(fileName + "." + format.extension())
+                        .build()
+                        .toString())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+        return response.body(body.apply(gzip));
+    }
+
+    /**
+     * Принимает ли клиент gzip по Accept-Encoding (RFC 9110, 12.5.3): "gzip;q=0" - отказ, "*" относится к gzip,
+     * только если gzip не назван явно; без заголовка ответ не сжимается
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (coding.equals(GZIP) || coding.equals("x-gzip")) {
+                gzip = weight(parts);
+            } else if (coding.equals("*")) {
+                any = weight(parts);
+            }
+        }
+        if (gzip != null) {
+            return gzip > 0;
+        }
+        return any != null && any > 0;
+    }
+
+    /**
+     * Параметр q; без него 1, неразборчивый - 0
+     */
+    private static double weight(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.length() > 1 && (parameter.charAt(0) == 'q' || parameter.charAt(0) == 'Q')
+                    && parameter.charAt(1) == '=') {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
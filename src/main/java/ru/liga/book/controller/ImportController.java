@@ -0,0 +1,70 @@
+package ru.liga.book.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.liga.book.dto.ImportProgress;
+import ru.liga.book.service.ImportJobService;
+
+@RestController
+@RequestMapping("/api/admin/imports")
+@RequiredArgsConstructor
+public class ImportController {
+
+    private final ImportJobService importJobService;
+
+    @Operation(summary = "Start book and review import", description = "Returns the job execution id immediately")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Import started",
+                    content = @Content(schema = @Schema(implementation = Long.class))),
+            @ApiResponse(responseCode = "409", description = "Import or similarity job is already running"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden")
+    })
+    @PostMapping
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<Long> startImport() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(importJobService.startImport());
+    }
+
+    @Operation(summary = "Get import progress")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import progress",
+                    content = @Content(schema = @Schema(implementation = ImportProgress.class))),
+            @ApiResponse(responseCode = "404", description = "Import execution not found"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden")
+    })
+    @GetMapping("/{executionId}")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<ImportProgress> getProgress(@PathVariable Long executionId) {
+        return ResponseEntity.ok(importJobService.getProgress(executionId));
+    }
+
+    @Operation(summary = "Stream import progress",
+            description = "Server-Sent Events 'progress' until the import finishes")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Progress event stream"),
+            @ApiResponse(responseCode = "404", description = "Import execution not found"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden")
+    })
+    @GetMapping(value = "/{executionId}/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public SseEmitter streamProgress(@PathVariable Long executionId) {
+        return importJobService.streamProgress(executionId);
+    }
+}
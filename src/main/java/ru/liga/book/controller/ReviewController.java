@@ -10,6 +10,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -18,10 +19,18 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.liga.book.dto.CursorPage;
+import ru.liga.book.dto.ExportFormat;
+import ru.liga.book.dto.ReviewSummary;
+import ru.liga.book.dto.Revision;
 import ru.liga.book.model.Review;
+import ru.liga.book.service.CatalogExportService;
 import ru.liga.book.service.ReviewService;
 
 import java.util.List;
@@ -33,6 +42,8 @@ public class ReviewController {
 
     private final ReviewService reviewService;
 
+    private final CatalogExportService catalogExportService;
+
     @Operation(summary = "Add a new review")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Review successfully added",
@@ -46,24 +57,53 @@ public class ReviewController {
         return ResponseEntity.ok(reviewService.addReview(review));
     }
 
-    @Operation(summary = "Find all reviews")
-    @ApiResponse(responseCode = "200", description = "Successfully found reviews",
-            content = @Content(array = @ArraySchema(schema = @Schema(implementation = Review.class))))
+    @Operation(summary = "Find all reviews ordered by ID, cursor paging",
+            description = "Flat rows (book and user IDs instead of entities); pass nextCursor as after for the next page")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully found reviews",
+                    content = @Content(schema = @Schema(implementation = CursorPage.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or size"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden")
+    })
     @GetMapping
     @PreAuthorize("hasAnyAuthority('ROLE_USER','ROLE_ADMIN')")
-    public ResponseEntity<List<Review>> findAllReviews() {
-        return ResponseEntity.ok(reviewService.findAllReviews());
+    public ResponseEntity<CursorPage<ReviewSummary>> findAllReviews(@RequestParam(required = false) String after,
+                                                                    @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(reviewService.findReviewsAfter(after, size));
+    }
+
+    @Operation(summary = "Export all reviews",
+            description = "Streams all reviews ordered by ID as NDJSON flat rows straight from a database cursor; "
+                    + "gzip-compressed when the client accepts it")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Reviews stream"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden")
+    })
+    @GetMapping("/export")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportReviews(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return ExportResponses.attachment("reviews", ExportFormat.NDJSON, acceptEncoding,
+                catalogExportService::exportReviews);
     }
 
-    @Operation(summary = "Find reviews by book ID")
+    @Operation(summary = "Find reviews by book ID",
+            description = "Supports If-None-Match and If-Modified-Since; 304 is answered without loading the reviews")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully found reviews for book",
                     content = @Content(array = @ArraySchema(schema = @Schema(implementation = Review.class)))),
+            @ApiResponse(responseCode = "304", description = "Reviews have not changed"),
             @ApiResponse(responseCode = "404", description = "Book not found")
     })
     @GetMapping("/book/{bookId}")
     @PreAuthorize("hasAnyAuthority('ROLE_USER','ROLE_ADMIN')")
-    public ResponseEntity<List<Review>> findReviewsByBookId(@PathVariable Long bookId) {
+    public ResponseEntity<List<Review>> findReviewsByBookId(@PathVariable Long bookId, WebRequest request) {
+        Revision revision = reviewService.findReviewsRevision(bookId);
+        if (request.checkNotModified(revision.getEtag(), revision.getLastModified().toEpochMilli())) {
+            return null;
+        }
         return ResponseEntity.ok(reviewService.findReviewsByBookId(bookId));
     }
 
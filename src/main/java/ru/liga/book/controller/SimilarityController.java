@@ -0,0 +1,39 @@
+package ru.liga.book.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.liga.book.service.SimilarityJobService;
+
+@RestController
+@RequestMapping("/api/admin/similarity")
+@RequiredArgsConstructor
+public class SimilarityController {
+
+    private final SimilarityJobService similarityJobService;
+
+    @Operation(summary = "Recompute similar books from reader ratings",
+            description = "Starts similarityJob and returns the job execution id immediately; "
+                    + "GET /api/books/{id}/similar keeps serving the previous results until it finishes")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Similarity job started",
+                    content = @Content(schema = @Schema(implementation = Long.class))),
+            @ApiResponse(responseCode = "409", description = "Similarity job or import is already running"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden")
+    })
+    @PostMapping
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<Long> startSimilarity() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(similarityJobService.startSimilarity());
+    }
+}
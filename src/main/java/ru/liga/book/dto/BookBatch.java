@@ -0,0 +1,18 @@
+package ru.liga.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Книги по списку id в порядке запроса (повторы убраны) и id, которых нет в базе
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookBatch {
+    private List<BookSummary> books;
+    private List<Long> missing;
+}
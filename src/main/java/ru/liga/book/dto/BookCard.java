@@ -0,0 +1,41 @@
+package ru.liga.book.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Карточка книги: все поля книги, число отзывов и последние отзывы. revision - версия именно этих данных:
+ * карточка может прийти из кеша, и ETag, взятый из базы, мог бы оказаться новее её
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookCard {
+    private Long id;
+    private String isbn;
+    private Long isbn13;
+    private String name;
+    private Double originalPublicationYear;
+    private String originalTitle;
+    private String title;
+    private String langCode;
+    private String imageUrl;
+    private String smallImageUrl;
+    private Integer ratingCount;
+    private Double ratingAvg;
+    private Integer ratings1;
+    private Integer ratings2;
+    private Integer ratings3;
+    private Integer ratings4;
+    private Integer ratings5;
+    private long reviewCount;
+    private List<ReviewSummary> reviews;
+    @JsonIgnore
+    private Revision revision;
+}
@@ -0,0 +1,22 @@
+package ru.liga.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Число книг под фильтром и по значениям каждого фасета. Счётчики фасета учитывают выбор
+ * только в остальных фасетах, чтобы было видно, сколько книг даст другое значение.
+ * Рейтинг r - книги со средней оценкой от r до r + 1 (5.0 входит в 4).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookFacets {
+    private long total;
+    private Map<String, Long> langCodes;
+    private Map<Integer, Long> decades;
+    private Map<Integer, Long> ratings;
+}
@@ -0,0 +1,22 @@
+package ru.liga.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Фильтры GET /api/books; незаданные поля не ограничивают выборку
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookFilter {
+    private String langCode;
+    private Integer yearFrom;
+    private Integer yearTo;
+    private Double minRatingAvg;
+    private Integer minRatingCount;
+    private String author;
+}
@@ -0,0 +1,15 @@
+package ru.liga.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookSuggestion {
+    private Long id;
+    private String title;
+    private String name;
+    private Integer ratingCount;
+}
@@ -0,0 +1,25 @@
+package ru.liga.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Книга в списках: только колонки books, без отзывов
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookSummary {
+    private Long id;
+    private String isbn;
+    private Long isbn13;
+    private String name;
+    private Double originalPublicationYear;
+    private String originalTitle;
+    private String title;
+    private String langCode;
+    private String smallImageUrl;
+    private Integer ratingCount;
+    private Double ratingAvg;
+}
@@ -0,0 +1,33 @@
+package ru.liga.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Страница курсорной пагинации: без общего числа строк, следующая страница запрашивается по nextCursor
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPage<T> {
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+
+    /**
+     * @param rows   до size + 1 строк: лишняя строка только показывает, что есть следующая страница
+     * @param cursor курсор, указывающий на строку (следующая страница начнётся после неё)
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int size, Function<T, String> cursor) {
+        if (rows.size() <= size) {
+            return new CursorPage<>(rows, size, false, null);
+        }
+        List<T> content = rows.subList(0, size);
+        return new CursorPage<>(content, size, true, cursor.apply(content.get(size - 1)));
+    }
+}
@@ -0,0 +1,32 @@
+package ru.liga.book.dto;
+
+/**
+ * Формат выгрузки каталога
+ */
+public enum ExportFormat {
+    /**
+     * Одна книга - одна строка JSON, отзывы (если запрошены) - массивом внутри книги
+     */
+    NDJSON("application/x-ndjson", "ndjson"),
+    /**
+     * Только колонки books, с заголовком
+     */
+    CSV("text/csv;charset=UTF-8", "csv");
+
+    private final String contentType;
+
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+}
@@ -0,0 +1,22 @@
+package ru.liga.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Выбранные значения фасетов GET /api/books/facets: внутри фасета - любое из значений, между фасетами - все.
+ * Незаданный фасет выборку не ограничивает.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FacetFilter {
+    private List<String> langCode;
+    private List<Integer> decade;
+    private List<Integer> rating;
+}
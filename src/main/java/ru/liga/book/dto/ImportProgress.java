@@ -0,0 +1,30 @@
+package ru.liga.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Состояние запуска importJob. totalRows и etaSeconds - оценка по числу строк во входных файлах,
+ * etaSeconds null, пока скорость ещё не известна или импорт завершён.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportProgress {
+    private Long executionId;
+    private String status;
+    private boolean running;
+    private String currentStep;
+    private long readCount;
+    private long writeCount;
+    private long skipCount;
+    private long totalRows;
+    private double rowsPerSecond;
+    private Long etaSeconds;
+    private List<StepProgress> steps;
+}
@@ -0,0 +1,20 @@
+package ru.liga.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Результат пакетного поиска по ISBN. Ключи found - ISBN в том виде, в каком их прислали, в порядке запроса.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IsbnLookup {
+    private Map<String, BookSummary> found;
+    private List<String> notFound;
+    private List<String> invalid;
+}
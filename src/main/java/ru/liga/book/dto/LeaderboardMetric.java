@@ -0,0 +1,15 @@
+package ru.liga.book.dto;
+
+/**
+ * По чему упорядочен рейтинг книг
+ */
+public enum LeaderboardMetric {
+    /**
+     * По средней оценке, только книги с достаточным числом оценок
+     */
+    TOP_RATED,
+    /**
+     * По числу оценок
+     */
+    MOST_RATED
+}
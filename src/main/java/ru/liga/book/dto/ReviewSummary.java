@@ -0,0 +1,17 @@
+package ru.liga.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReviewSummary {
+    private Long id;
+    private Long bookId;
+    private Long userId;
+    private String username;
+    private Integer rating;
+    private String comment;
+}
@@ -0,0 +1,26 @@
+package ru.liga.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Версия карточки книги и списка её отзывов для условного GET: strong ETag и Last-Modified.
+ * Меняется при изменении книги (version) и любого её отзыва (reviews_updated_at).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Revision {
+    private String etag;
+    private Instant lastModified;
+
+    public static Revision of(long version, Instant updatedAt, Instant reviewsUpdatedAt) {
+        long reviewsMicros = ChronoUnit.MICROS.between(Instant.EPOCH, reviewsUpdatedAt);
+        Instant lastModified = updatedAt.isAfter(reviewsUpdatedAt) ? updatedAt : reviewsUpdatedAt;
+        return new Revision("\"" + version + "-" + reviewsMicros + "\"", lastModified);
+    }
+}
@@ -0,0 +1,21 @@
+package ru.liga.book.dto;
+
+import lombok.Getter;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * Страница поиска с ограниченным числом совпадений: truncated - совпадений больше, чем ранжируется,
+ * totalElements считает только ранжируемые
+ */
+@Getter
+public class SearchPage<T> extends PageImpl<T> {
+    private final boolean truncated;
+
+    public SearchPage(List<T> content, Pageable pageable, long total, boolean truncated) {
+        super(content, pageable, total);
+        this.truncated = truncated;
+    }
+}
@@ -0,0 +1,17 @@
+package ru.liga.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Похожая книга: сходство по выбранной мере и число читателей, оценивших обе книги
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SimilarBook {
+    private BookSummary book;
+    private double score;
+    private int commonUsers;
+}
@@ -0,0 +1,15 @@
+package ru.liga.book.dto;
+
+/**
+ * Мера сходства книг по оценкам читателей
+ */
+public enum SimilarityMetric {
+    /**
+     * Косинус между векторами оценок книг: учитывает, насколько одинаково книги оценены
+     */
+    COSINE,
+    /**
+     * Доля общих читателей среди всех, кто оценил хотя бы одну из книг; значение оценки не важно
+     */
+    JACCARD
+}
@@ -0,0 +1,20 @@
+package ru.liga.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StepProgress {
+    private String name;
+    private String status;
+    private long readCount;
+    private long writeCount;
+    private long filterCount;
+    private long skipCount;
+    private double rowsPerSecond;
+}
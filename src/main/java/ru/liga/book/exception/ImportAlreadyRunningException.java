@@ -0,0 +1,7 @@
+package ru.liga.book.exception;
+
+public class ImportAlreadyRunningException extends RuntimeException {
+    public ImportAlreadyRunningException(String message) {
+        super(message);
+    }
+}
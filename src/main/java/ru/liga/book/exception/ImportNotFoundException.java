@@ -0,0 +1,7 @@
+package ru.liga.book.exception;
+
+public class ImportNotFoundException extends RuntimeException {
+    public ImportNotFoundException(String message) {
+        super(message);
+    }
+}
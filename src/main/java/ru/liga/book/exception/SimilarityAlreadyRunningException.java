@@ -0,0 +1,7 @@
+package ru.liga.book.exception;
+
+public class SimilarityAlreadyRunningException extends RuntimeException {
+    public SimilarityAlreadyRunningException(String message) {
+        super(message);
+    }
+}
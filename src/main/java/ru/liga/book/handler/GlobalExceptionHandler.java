@@ -2,11 +2,15 @@ package ru.liga.book.handler;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 import ru.liga.book.exception.BookNotFoundException;
+import ru.liga.book.exception.ImportAlreadyRunningException;
+import ru.liga.book.exception.ImportNotFoundException;
 import ru.liga.book.exception.ReviewNotFoundException;
+import ru.liga.book.exception.SimilarityAlreadyRunningException;
 import ru.liga.book.exception.UserAlreadyExistsException;
 import ru.liga.book.exception.UserNotFoundException;
 
@@ -17,6 +21,11 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleOptimisticLockingFailure(ObjectOptimisticLockingFailureException ex) {
+        return new ResponseEntity<>("Entity was modified concurrently, reload and retry", HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<String> handleIllegalArgumentException(IllegalArgumentException ex) {
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
@@ -37,4 +46,19 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(ImportNotFoundException.class)
+    public ResponseEntity<String> handleImportNotFoundException(ImportNotFoundException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(ImportAlreadyRunningException.class)
+    public ResponseEntity<String> handleImportAlreadyRunningException(ImportAlreadyRunningException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(SimilarityAlreadyRunningException.class)
+    public ResponseEntity<String> handleSimilarityAlreadyRunningException(SimilarityAlreadyRunningException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.CONFLICT);
+    }
+
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package ru.liga.book.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -9,12 +10,15 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
 import java.util.List;
 
 @Entity
@@ -31,7 +35,7 @@ public class Book {
 
     private String isbn;
 
-    private Double isbn13;
+    private Long isbn13;
 
     private String name;
 
@@ -50,10 +54,54 @@ public class Book {
     @Column(length = 1000)
     private String smallImageUrl;
 
+    /**
+     * Агрегаты оценок (число, среднее, сумма и гистограмма 1-5) пишутся при создании книги, а дальше
+     * меняются только запросом {@link ru.liga.book.repository.BookRepository#applyRating}: сохранение
+     * сущности их не трогает, иначе затёрло бы оценки, добавленные после её загрузки
+     */
+    @Column(updatable = false)
     private Integer ratingCount;
 
+    @Column(updatable = false)
     private Double ratingAvg;
 
+    @JsonIgnore
+    @Column(updatable = false)
+    private Long ratingSum;
+
+    @Column(name = "ratings_1", updatable = false)
+    private Integer ratings1;
+
+    @Column(name = "ratings_2", updatable = false)
+    private Integer ratings2;
+
+    @Column(name = "ratings_3", updatable = false)
+    private Integer ratings3;
+
+    @Column(name = "ratings_4", updatable = false)
+    private Integer ratings4;
+
+    @Column(name = "ratings_5", updatable = false)
+    private Integer ratings5;
+
+    @JsonIgnore
+    private Long rowHash;
+
+    @Version
+    @JsonIgnore
+    private Long version;
+
+    @UpdateTimestamp
+    @JsonIgnore
+    private Instant updatedAt;
+
+    /**
+     * Время последнего изменения отзывов книги; пишется запросом {@link ru.liga.book.repository.BookRepository#touchReviews}
+     */
+    @JsonIgnore
+    @Column(insertable = false, updatable = false)
+    private Instant reviewsUpdatedAt;
+
     @OneToMany(mappedBy = "book", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Review> reviews;
 }
\ No newline at end of file
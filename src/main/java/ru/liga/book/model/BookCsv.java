@@ -18,7 +18,7 @@ public class BookCsv {
     private Integer workId;
     private Integer booksCount;
     private String isbn;
-    private Double isbn13;
+    private String isbn13;
     private String authors;
     private Double originalPublicationYear;
     private String originalTitle;
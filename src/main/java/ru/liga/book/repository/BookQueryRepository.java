@@ -0,0 +1,14 @@
+package ru.liga.book.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import ru.liga.book.dto.BookSummary;
+import ru.liga.book.model.Book;
+
+public interface BookQueryRepository {
+    /**
+     * Страница BookSummary по условию; count выполняется, только если без него нельзя посчитать total
+     */
+    Page<BookSummary> findSummaries(Specification<Book> specification, Pageable pageable);
+}
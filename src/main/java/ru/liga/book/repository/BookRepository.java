@@ -1,30 +1,190 @@
 package ru.liga.book.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.lang.NonNull;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+import ru.liga.book.dto.BookSuggestion;
+import ru.liga.book.dto.BookSummary;
 import ru.liga.book.model.Book;
 
-public interface BookRepository extends JpaRepository<Book, Long> {
-    @Query("SELECT b FROM Book b WHERE LOWER(b.name) LIKE LOWER(CONCAT('%', :name, '%'))")
-    @EntityGraph(attributePaths = {"reviews"})
-    Page<Book> findByNameContainingIgnoreCase(String name, Pageable pageable);
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-    @Query("SELECT b FROM Book b WHERE b.isbn = :isbn")
-    @EntityGraph(attributePaths = {"reviews"})
-    Page<Book> findByIsbn(String isbn, Pageable pageable);
+public interface BookRepository extends JpaRepository<Book, Long>, BookQueryRepository {
+    String SUMMARY = "SELECT new ru.liga.book.dto.BookSummary(b.id, b.isbn, b.isbn13, b.name, "
+            + "b.originalPublicationYear, b.originalTitle, b.title, b.langCode, b.smallImageUrl, b.ratingCount, "
+            + "b.ratingAvg) FROM Book b";
 
-    @EntityGraph(attributePaths = {"reviews"})
-    Page<Book> findAllByOrderByTitleAsc(Pageable pageable);
+    /**
+     * Строк за одно обращение к серверному курсору при выгрузке каталога
+     */
+    String EXPORT_FETCH_SIZE = "1000";
 
-    @EntityGraph(attributePaths = {"reviews"})
-    Page<Book> findAllByOrderByOriginalPublicationYearDesc(Pageable pageable);
+    /**
+     * Сколько совпадений полнотекстового поиска ранжируется и считается
+     */
+    int SEARCH_CANDIDATES = 1000;
 
-    @Override
-    @NonNull
-    @EntityGraph(attributePaths = {"reviews"})
-    Page<Book> findAll(@NonNull Pageable pageable);
-}
\ No newline at end of file
+    /**
+     * Id книг по полнотекстовому индексу search_vector, от более релевантных к менее.
+     * По релевантности ранжируются {@link #SEARCH_CANDIDATES} самых оцениваемых совпадений (первый проход
+     * может идти по idx_books_rating_count), поэтому короткий префикс не сортирует весь каталог по ts_rank_cd.
+     * total считает совпадения до SEARCH_CANDIDATES + 1: больше SEARCH_CANDIDATES - выдача усечена.
+     * Сортировка Pageable не применяется.
+     *
+     * @param query tsquery, см. {@link ru.liga.book.util.FullTextQuery#prefixQuery}
+     */
+    @Query(value = """
+            SELECT c.id FROM (
+                SELECT b.id, b.search_vector, b.rating_count FROM books b
+                WHERE b.search_vector @@ to_tsquery('simple', :query)
+                ORDER BY b.rating_count DESC, b.id
+                LIMIT\s""" + SEARCH_CANDIDATES + """
+            ) c
+            ORDER BY ts_rank_cd(c.search_vector, to_tsquery('simple', :query)) DESC, c.rating_count DESC, c.id
+            """,
+            countQuery = "SELECT count(*) FROM (SELECT 1 FROM books b "
+                    + "WHERE b.search_vector @@ to_tsquery('simple', :query) LIMIT " + (SEARCH_CANDIDATES + 1) + ") c",
+            nativeQuery = true)
+    Page<Long> searchIds(String query, Pageable pageable);
+
+    @Query(SUMMARY + " WHERE b.id IN :ids")
+    List<BookSummary> findSummariesByIdIn(Collection<Long> ids);
+
+    @Query("SELECT new ru.liga.book.dto.BookSuggestion(b.id, b.title, b.name, b.ratingCount) "
+            + "FROM Book b WHERE b.id IN :ids")
+    List<BookSuggestion> findSuggestionsByIdIn(Collection<Long> ids);
+
+    @Query(value = SUMMARY + " WHERE b.isbn13 = :isbn13",
+            countQuery = "SELECT count(b) FROM Book b WHERE b.isbn13 = :isbn13")
+    Page<BookSummary> findSummariesByIsbn13(Long isbn13, Pageable pageable);
+
+    /**
+     * Один запрос по уникальному индексу uq_books_isbn13 на весь пакет
+     */
+    @Query(SUMMARY + " WHERE b.isbn13 IN :isbn13s")
+    List<BookSummary> findSummariesByIsbn13In(Collection<Long> isbn13s);
+
+    interface RevisionView {
+        long getVersion();
+
+        Instant getUpdatedAt();
+
+        Instant getReviewsUpdatedAt();
+    }
+
+    /**
+     * Только колонки версии, без загрузки сущности: по ним отвечаем 304 на условный GET
+     */
+    Optional<RevisionView> findRevisionById(Long id);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Book b SET b.reviewsUpdatedAt = :now WHERE b.id = :id")
+    void touchReviews(Long id, Instant now);
+
+    /**
+     * Добавляет оценку к агрегатам книги (delta = 1) или убирает её (delta = -1). Все выражения SET
+     * вычисляются по значениям строки до обновления, а сама строка блокируется до конца транзакции,
+     * поэтому параллельные изменения отзывов не теряют друг друга. Версия увеличивается, чтобы
+     * сохранение книги, загруженной до изменения оценок, не прошло проверку version.
+     *
+     * @param rating оценка 1-5
+     * @return 0, если книги нет
+     */
+    @Modifying
+    @Query("""
+            UPDATE Book b SET
+                b.version = b.version + 1,
+                b.ratingCount = b.ratingCount + :delta,
+                b.ratingSum = b.ratingSum + :delta * :rating,
+                b.ratingAvg = coalesce(cast(b.ratingSum + :delta * :rating AS Double)
+                        / nullif(b.ratingCount + :delta, 0), 0.0),
+                b.ratings1 = b.ratings1 + CASE WHEN :rating = 1 THEN :delta ELSE 0 END,
+                b.ratings2 = b.ratings2 + CASE WHEN :rating = 2 THEN :delta ELSE 0 END,
+                b.ratings3 = b.ratings3 + CASE WHEN :rating = 3 THEN :delta ELSE 0 END,
+                b.ratings4 = b.ratings4 + CASE WHEN :rating = 4 THEN :delta ELSE 0 END,
+                b.ratings5 = b.ratings5 + CASE WHEN :rating = 5 THEN :delta ELSE 0 END
+            WHERE b.id = :bookId
+            """)
+    int applyRating(Long bookId, int rating, int delta);
+
+    interface NeighbourView {
+        Long getNeighbourId();
+
+        double getScore();
+
+        int getCommonUsers();
+    }
+
+    /**
+     * Соседи книги из последнего расчёта similarityJob, от более похожих к менее
+     *
+     * @param metric {@link ru.liga.book.dto.SimilarityMetric#name()}
+     */
+    @Query(value = """
+            SELECT n.neighbour_id AS "neighbourId", n.score AS "score", n.common_users AS "commonUsers"
+            FROM book_neighbours n
+            WHERE n.book_id = :id AND n.metric = :metric
+            ORDER BY n.rank
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<NeighbourView> findNeighbours(Long id, String metric, int limit);
+
+    /**
+     * Все книги для выгрузки каталога. Курсор работает только внутри транзакции; сущности вызывающий
+     * должен отсоединять сам, read-only избавляет их от снимков для dirty checking.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT b FROM Book b ORDER BY b.id")
+    Stream<Book> streamAllOrderById();
+
+    boolean existsByIsbn13(Long isbn13);
+
+    boolean existsByIsbn13AndIdNot(Long isbn13, Long id);
+
+    @Query(value = SUMMARY + " ORDER BY b.title ASC, b.id",
+            countQuery = "SELECT count(b) FROM Book b")
+    Page<BookSummary> findSummariesOrderByTitle(Pageable pageable);
+
+    @Query(value = SUMMARY + " ORDER BY b.originalPublicationYear DESC NULLS LAST, b.id",
+            countQuery = "SELECT count(b) FROM Book b")
+    Page<BookSummary> findSummariesOrderByPublicationYear(Pageable pageable);
+
+    /*
+     * Keyset-пагинация: сначала строки с ключом сортировки (сравнение кортежей идёт по индексу),
+     * затем строки с пустым ключом по id. Pageable задаёт только LIMIT, count не выполняется.
+     */
+
+    @Query(SUMMARY + " WHERE b.title IS NOT NULL ORDER BY b.title, b.id")
+    List<BookSummary> findFirstByTitle(Pageable limit);
+
+    @Query(SUMMARY + " WHERE b.title IS NOT NULL AND (b.title, b.id) > (:title, :id) ORDER BY b.title, b.id")
+    List<BookSummary> findByTitleAfter(String title, Long id, Pageable limit);
+
+    @Query(SUMMARY + " WHERE b.title IS NULL AND b.id > :id ORDER BY b.id")
+    List<BookSummary> findUntitledAfter(Long id, Pageable limit);
+
+    @Query(SUMMARY + " WHERE b.originalPublicationYear IS NOT NULL "
+            + "ORDER BY b.originalPublicationYear DESC, b.id DESC")
+    List<BookSummary> findFirstByYear(Pageable limit);
+
+    @Query(SUMMARY + " WHERE b.originalPublicationYear IS NOT NULL AND (b.originalPublicationYear, b.id) < (:year, :id) "
+            + "ORDER BY b.originalPublicationYear DESC, b.id DESC")
+    List<BookSummary> findByYearBefore(Double year, Long id, Pageable limit);
+
+    @Query(SUMMARY + " WHERE b.originalPublicationYear IS NULL AND b.id < :id ORDER BY b.id DESC")
+    List<BookSummary> findUndatedBefore(Long id, Pageable limit);
+}
@@ -0,0 +1,71 @@
+package ru.liga.book.repository;
+
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.StringUtils;
+import ru.liga.book.dto.BookFilter;
+import ru.liga.book.model.Book;
+
+import java.util.Locale;
+
+/**
+ * Условия выборки книг для {@link BookQueryRepository}. Для каждого условия есть индекс в changelog 016.
+ */
+public final class BookSpecifications {
+
+    private BookSpecifications() {
+    }
+
+    public static Specification<Book> of(BookFilter filter) {
+        Specification<Book> specification = Specification.where(null);
+        if (StringUtils.hasText(filter.getLangCode())) {
+            specification = specification.and(langCode(filter.getLangCode()));
+        }
+        if (filter.getYearFrom() != null) {
+            specification = specification.and(yearFrom(filter.getYearFrom()));
+        }
+        if (filter.getYearTo() != null) {
+            specification = specification.and(yearTo(filter.getYearTo()));
+        }
+        if (filter.getMinRatingAvg() != null) {
+            specification = specification.and(minRatingAvg(filter.getMinRatingAvg()));
+        }
+        if (filter.getMinRatingCount() != null) {
+            specification = specification.and(minRatingCount(filter.getMinRatingCount()));
+        }
+        if (StringUtils.hasText(filter.getAuthor())) {
+            specification = specification.and(authorContains(filter.getAuthor()));
+        }
+        return specification;
+    }
+
+    public static Specification<Book> langCode(String langCode) {
+        return (book, query, cb) -> cb.equal(book.get("langCode"), langCode);
+    }
+
+    public static Specification<Book> yearFrom(int year) {
+        return (book, query, cb) -> cb.greaterThanOrEqualTo(book.get("originalPublicationYear"), (double) year);
+    }
+
+    public static Specification<Book> yearTo(int year) {
+        return (book, query, cb) -> cb.lessThanOrEqualTo(book.get("originalPublicationYear"), (double) year);
+    }
+
+    public static Specification<Book> minRatingAvg(double ratingAvg) {
+        return (book, query, cb) -> cb.greaterThanOrEqualTo(book.get("ratingAvg"), ratingAvg);
+    }
+
+    public static Specification<Book> minRatingCount(int ratingCount) {
+        return (book, query, cb) -> cb.greaterThanOrEqualTo(book.get("ratingCount"), ratingCount);
+    }
+
+    /**
+     * Подстрока в name без учёта регистра; lower(name) LIKE '%...%' обслуживает триграммный индекс
+     */
+    public static Specification<Book> authorContains(String author) {
+        String pattern = "%" + author.toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+        return (book, query, cb) -> cb.like(cb.lower(book.get("name")), pattern, '\\');
+    }
+}
@@ -1,16 +1,46 @@
 package ru.liga.book.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import ru.liga.book.dto.ReviewSummary;
 import ru.liga.book.model.Review;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface ReviewRepository extends JpaRepository<Review, Long> {
+    String SUMMARY = "SELECT new ru.liga.book.dto.ReviewSummary(r.id, r.book.id, u.id, u.username, r.rating, "
+            + "r.comment) FROM Review r JOIN r.user u";
+
     @EntityGraph(attributePaths = {"book", "user"})
     List<Review> findByBookId(Long bookId);
 
     Page<Review> findByBookIdOrderByRatingDesc(Long bookId, Pageable pageable);
+
+    @Query(value = SUMMARY + " WHERE r.book.id = :bookId ORDER BY r.id DESC",
+            countQuery = "SELECT count(r) FROM Review r WHERE r.book.id = :bookId")
+    Page<ReviewSummary> findSummariesByBookId(Long bookId, Pageable pageable);
+
+    @Query(SUMMARY + " WHERE r.id > :afterId ORDER BY r.id")
+    List<ReviewSummary> findSummariesAfter(Long afterId, Pageable limit);
+
+    /**
+     * Все отзывы для выгрузки каталога, курсором по индексу idx_reviews_book_id_id
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = BookRepository.EXPORT_FETCH_SIZE))
+    @Query(SUMMARY + " ORDER BY r.book.id, r.id")
+    Stream<ReviewSummary> streamSummariesOrderByBookId();
+
+    /**
+     * Все отзывы по id для потоковой выгрузки, курсором по первичному ключу
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = BookRepository.EXPORT_FETCH_SIZE))
+    @Query(SUMMARY + " ORDER BY r.id")
+    Stream<ReviewSummary> streamSummariesOrderById();
 }
\ No newline at end of file
@@ -2,14 +2,31 @@ package ru.liga.book.service;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import ru.liga.book.dto.BookBatch;
+import ru.liga.book.dto.BookCard;
+import ru.liga.book.dto.BookFacets;
+import ru.liga.book.dto.BookFilter;
+import ru.liga.book.dto.BookSuggestion;
+import ru.liga.book.dto.BookSummary;
+import ru.liga.book.dto.CursorPage;
+import ru.liga.book.dto.FacetFilter;
+import ru.liga.book.dto.IsbnLookup;
+import ru.liga.book.dto.LeaderboardMetric;
+import ru.liga.book.dto.SearchPage;
+import ru.liga.book.dto.SimilarBook;
+import ru.liga.book.dto.SimilarityMetric;
 import ru.liga.book.model.Book;
 
-import java.util.Optional;
+import java.util.List;
 
 public interface BookService {
-    Page<Book> findAllBooks(Pageable pageable);
+    Page<BookSummary> findAllBooks(BookFilter filter, Pageable pageable);
 
-    Optional<Book> findBookById(Long id);
+    BookFacets findFacets(FacetFilter filter);
+
+    BookCard findBookCard(Long id);
+
+    BookBatch findBooksByIds(List<Long> ids);
 
     Book saveBook(Book book);
 
@@ -17,11 +34,23 @@ public interface BookService {
 
     void deleteBook(Long id);
 
-    Page<Book> findBooksByTitle(String title, Pageable pageable);
+    SearchPage<BookSummary> findBooksByTitle(String title, Pageable pageable);
+
+    Page<BookSummary> findBooksByIsbn(String isbn, Pageable pageable);
+
+    IsbnLookup findBooksByIsbns(List<String> isbns);
+
+    Page<BookSummary> findAllBooksSortedByTitle(Pageable pageable);
+
+    Page<BookSummary> findAllBooksSortedByPublicationYear(Pageable pageable);
+
+    List<BookSuggestion> autocomplete(String prefix, int limit);
+
+    List<BookSummary> findLeaderboard(LeaderboardMetric metric, String langCode, Integer decade, int limit);
 
-    Page<Book> findBooksByIsbn(String isbn, Pageable pageable);
+    List<SimilarBook> findSimilarBooks(Long id, SimilarityMetric metric, int limit);
 
-    Page<Book> findAllBooksSortedByTitle(Pageable pageable);
+    CursorPage<BookSummary> findBooksByTitleAfter(String after, int size);
 
-    Page<Book> findAllBooksSortedByPublicationYear(Pageable pageable);
+    CursorPage<BookSummary> findBooksByPublicationYearBefore(String after, int size);
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package ru.liga.book.service;
+
+import ru.liga.book.dto.CacheStatistics;
+
+import java.util.List;
+
+public interface CacheService {
+    List<CacheStatistics> getStatistics();
+}
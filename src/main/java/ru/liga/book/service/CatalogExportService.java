@@ -0,0 +1,10 @@
+package ru.liga.book.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.liga.book.dto.ExportFormat;
+
+public interface CatalogExportService {
+    StreamingResponseBody exportBooks(ExportFormat format, boolean withReviews, boolean gzip);
+
+    StreamingResponseBody exportReviews(boolean gzip);
+}
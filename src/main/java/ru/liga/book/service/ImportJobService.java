@@ -0,0 +1,12 @@
+package ru.liga.book.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.liga.book.dto.ImportProgress;
+
+public interface ImportJobService {
+    Long startImport();
+
+    ImportProgress getProgress(Long executionId);
+
+    SseEmitter streamProgress(Long executionId);
+}
@@ -2,6 +2,9 @@ package ru.liga.book.service;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import ru.liga.book.dto.CursorPage;
+import ru.liga.book.dto.ReviewSummary;
+import ru.liga.book.dto.Revision;
 import ru.liga.book.model.Review;
 
 import java.util.List;
@@ -9,10 +12,12 @@ import java.util.List;
 public interface ReviewService {
     Review addReview(Review review);
 
-    List<Review> findAllReviews();
+    CursorPage<ReviewSummary> findReviewsAfter(String after, int size);
 
     List<Review> findReviewsByBookId(Long bookId);
 
+    Revision findReviewsRevision(Long bookId);
+
     Review updateReview(Review review);
 
     void deleteReview(Long reviewId);
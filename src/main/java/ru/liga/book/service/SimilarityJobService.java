@@ -0,0 +1,5 @@
+package ru.liga.book.service;
+
+public interface SimilarityJobService {
+    Long startSimilarity();
+}
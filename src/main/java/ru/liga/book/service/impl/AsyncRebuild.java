@@ -0,0 +1,49 @@
+package ru.liga.book.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Фоновая перестройка индекса в памяти: одновременно идёт не больше одной. Запрос, пришедший во время
+ * перестройки, не теряется - после неё запускается ещё одна, которая прочитает данные, записанные
+ * к этому моменту (например, импорт, закончившийся во время перестройки при старте).
+ */
+final class AsyncRebuild {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncRebuild.class);
+
+    private final String name;
+
+    private final Runnable rebuild;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    AsyncRebuild(String name, Runnable rebuild) {
+        this.name = name;
+        this.rebuild = rebuild;
+    }
+
+    void request() {
+        pending.set(true);
+        startPending();
+    }
+
+    private void startPending() {
+        if (pending.get() && running.compareAndSet(false, true)) {
+            pending.set(false);
+            CompletableFuture.runAsync(rebuild)
+                    .whenComplete((result, e) -> {
+                        if (e != null) {
+                            log.error("{} rebuild failed", name, e);
+                        }
+                        running.set(false);
+                        startPending();
+                    });
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package ru.liga.book.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.liga.book.batch.ImportFinishedEvent;
+
+/**
+ * Кеш карточек книг ({@link BookServiceImpl#findBookCard}) для тех, кто меняет данные карточки
+ * в обход BookService: отзывы и импорт
+ */
+@Component
+@RequiredArgsConstructor
+public class BookCardCache {
+
+    public static final String NAME = "bookCards";
+
+    private final CacheManager cacheManager;
+
+    public void evict(Long bookId) {
+        Cache cache = cacheManager.getCache(NAME);
+        if (cache != null && bookId != null) {
+            cache.evict(bookId);
+        }
+    }
+
+    @EventListener(ImportFinishedEvent.class)
+    public void clear() {
+        Cache cache = cacheManager.getCache(NAME);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package ru.liga.book.service.impl;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.liga.book.dto.BookFacets;
+import ru.liga.book.dto.FacetFilter;
+import ru.liga.book.util.Ratings;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Битовые индексы (Roaring) по id книг для фасетов: язык, десятилетие издания и корзина средней оценки.
+ * Строятся по таблице books при старте и после импорта, изменения книги и её оценок перечитываются
+ * из базы после коммита ({@link BookIndex}). Счётчики для любого сочетания фильтров - пересечения битмапов в памяти.
+ */
+@Component
+public class BookFacetIndex extends BookIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(BookFacetIndex.class);
+
+    private static final int FETCH_SIZE = 10_000;
+    private static final String SELECT = "SELECT id, lang_code, original_publication_year, rating_count, rating_avg "
+            + "FROM books";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Битмапы меняются на месте только под записью, подсчёт идёт под чтением
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile Facets facets = new Facets();
+
+    public BookFacetIndex(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+    }
+
+    public BookFacets count(FacetFilter filter) {
+        lock.readLock().lock();
+        try {
+            Facets current = facets;
+            RoaringBitmap langCodes = current.langCodes.select(filter.getLangCode());
+            RoaringBitmap decades = current.decades.select(filter.getDecade());
+            RoaringBitmap ratings = current.ratings.select(filter.getRating());
+            RoaringBitmap all = and(current.all, langCodes, decades, ratings);
+            return new BookFacets(all.getLongCardinality(),
+                    current.langCodes.count(and(current.all, decades, ratings)),
+                    current.decades.count(and(current.all, langCodes, ratings)),
+                    current.ratings.count(and(current.all, langCodes, decades)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void build() {
+        long start = System.currentTimeMillis();
+        Facets rebuilt = new Facets();
+        jdbcTemplate.query(SELECT, rs -> {
+            rebuilt.add(rs);
+        });
+        rebuilt.optimize();
+        facets = rebuilt;
+        log.info("Book facet index rebuilt: {} books, {} KB in {} ms", rebuilt.all.getLongCardinality(),
+                rebuilt.sizeInBytes() >> 10, System.currentTimeMillis() - start);
+    }
+
+    @Override
+    protected void reload(Long id) {
+        jdbcTemplate.query(SELECT + " WHERE id = ?", rs -> {
+            lock.writeLock().lock();
+            try {
+                Facets current = facets;
+                current.remove(id);
+                while (rs.next()) {
+                    current.add(rs);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return null;
+        }, id);
+    }
+
+    /**
+     * Пересечение выбранных фасетов; null - фасет не выбран
+     */
+    private static RoaringBitmap and(RoaringBitmap all, RoaringBitmap... selected) {
+        List<RoaringBitmap> bitmaps = new ArrayList<>(selected.length);
+        for (RoaringBitmap bitmap : selected) {
+            if (bitmap != null) {
+                bitmaps.add(bitmap);
+            }
+        }
+        if (bitmaps.isEmpty()) {
+            return all;
+        }
+        return bitmaps.size() == 1 ? bitmaps.get(0) : FastAggregation.and(bitmaps.iterator());
+    }
+
+    /**
+     * Id книги как беззнаковое 32-битное значение битмапа
+     */
+    private static int key(long id) {
+        if (id < 0 || id > 0xFFFFFFFFL) {
+            throw new IllegalStateException("Book ID does not fit a facet bitmap: " + id);
+        }
+        return (int) id;
+    }
+
+    /**
+     * Корзина средней оценки: её целая часть, 5.0 - в последней корзине; у книги без оценок корзины нет
+     */
+    private static Integer ratingBucket(Integer ratingCount, Double ratingAvg) {
+        if (ratingCount == null || ratingCount == 0 || ratingAvg == null || ratingAvg < Ratings.MIN) {
+            return null;
+        }
+        return Math.min((int) Math.floor(ratingAvg), Ratings.MAX - 1);
+    }
+
+    private static final class Facets {
+
+        private final RoaringBitmap all = new RoaringBitmap();
+
+        private final Facet<String> langCodes = new Facet<>();
+
+        private final Facet<Integer> decades = new Facet<>();
+
+        private final Facet<Integer> ratings = new Facet<>();
+
+        private void add(ResultSet rs) throws SQLException {
+            int id = key(rs.getLong(1));
+            all.add(id);
+            langCodes.add(rs.getString(2), id);
+            Double year = rs.getObject(3, Double.class);
+            decades.add(year == null ? null : (int) Math.floor(year / 10) * 10, id);
+            ratings.add(ratingBucket(rs.getObject(4, Integer.class), rs.getObject(5, Double.class)), id);
+        }
+
+        private void remove(long bookId) {
+            int id = key(bookId);
+            all.remove(id);
+            langCodes.remove(id);
+            decades.remove(id);
+            ratings.remove(id);
+        }
+
+        private void optimize() {
+            all.runOptimize();
+            langCodes.optimize();
+            decades.optimize();
+            ratings.optimize();
+        }
+
+        private long sizeInBytes() {
+            return all.getLongSizeInBytes() + langCodes.sizeInBytes() + decades.sizeInBytes()
+                    + ratings.sizeInBytes();
+        }
+    }
+
+    /**
+     * Битмап книг на каждое значение фасета
+     */
+    private static final class Facet<K extends Comparable<K>> {
+
+        private final Map<K, RoaringBitmap> values = new TreeMap<>();
+
+        private void add(K value, int id) {
+            if (value != null) {
+                values.computeIfAbsent(value, v -> new RoaringBitmap()).add(id);
+            }
+        }
+
+        private void remove(int id) {
+            values.values().removeIf(bitmap -> {
+                bitmap.remove(id);
+                return bitmap.isEmpty();
+            });
+        }
+
+        /**
+         * Книги с любым из выбранных значений; null, если ничего не выбрано
+         */
+        private RoaringBitmap select(Collection<K> selected) {
+            if (selected == null || selected.isEmpty()) {
+                return null;
+            }
+            List<RoaringBitmap> bitmaps = new ArrayList<>(selected.size());
+            for (K value : selected) {
+                RoaringBitmap bitmap = values.get(value);
+                if (bitmap != null) {
+                    bitmaps.add(bitmap);
+                }
+            }
+            return bitmaps.isEmpty() ? new RoaringBitmap() : FastAggregation.or(bitmaps.iterator());
+        }
+
+        /**
+         * Ненулевые счётчики значений внутри within, по возрастанию значения
+         */
+        private Map<K, Long> count(RoaringBitmap within) {
+            Map<K, Long> counts = new LinkedHashMap<>();
+            values.forEach((value, bitmap) -> {
+                long count = RoaringBitmap.andCardinality(within, bitmap);
+                if (count > 0) {
+                    counts.put(value, count);
+                }
+            });
+            return counts;
+        }
+
+        private void optimize() {
+            values.values().forEach(RoaringBitmap::runOptimize);
+        }
+
+        private long sizeInBytes() {
+            return values.values().stream().mapToLong(RoaringBitmap::getLongSizeInBytes).sum();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ru.liga.book.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.liga.book.batch.ImportFinishedEvent;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Индекс книг в памяти, построенный по таблице books: целиком при старте и после импорта, по одной книге -
+ * после коммита транзакции, изменившей её.
+ * <p>
+ * Перестройка собирает новую структуру без блокировки и подменяет ею текущую, поэтому запись книги
+ * не ждёт чтения всей таблицы. Книги, перечитанные во время перестройки, могли попасть в старую структуру
+ * или в новую до своего коммита - после подмены они перечитываются ещё раз. Перечитывание книги идёт
+ * под монитором индекса, поэтому последнее чтение книги видит последний коммит.
+ */
+public abstract class BookIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(BookIndex.class);
+
+    private final AsyncRebuild rebuilds = new AsyncRebuild(getClass().getSimpleName(), this::rebuild);
+
+    private final Object rebuildMonitor = new Object();
+
+    /**
+     * Книги, перечитанные во время текущей перестройки; null, если перестройки нет. Меняется под монитором индекса.
+     */
+    private Set<Long> changedDuringRebuild;
+
+    /**
+     * Перечитывает книгу после коммита текущей транзакции (или сразу, если её нет)
+     */
+    public void refresh(Long id) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reloadBook(id);
+                }
+            });
+        } else {
+            reloadBook(id);
+        }
+    }
+
+    @EventListener({ApplicationReadyEvent.class, ImportFinishedEvent.class})
+    public void rebuildAsync() {
+        rebuilds.request();
+    }
+
+    public void rebuild() {
+        synchronized (rebuildMonitor) {
+            synchronized (this) {
+                changedDuringRebuild = new HashSet<>();
+            }
+            Set<Long> changed;
+            try {
+                build();
+            } finally {
+                synchronized (this) {
+                    changed = changedDuringRebuild;
+                    changedDuringRebuild = null;
+                }
+            }
+            for (Long id : changed) {
+                reloadBook(id);
+            }
+        }
+    }
+
+    /**
+     * Транзакция книги уже закоммичена: ошибка чтения не доходит до клиента, индекс догоняет базу перестройкой
+     */
+    private synchronized void reloadBook(Long id) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(id);
+        }
+        try {
+            reload(id);
+        } catch (RuntimeException e) {
+            log.error("{} failed to reload book {}, rebuilding", getClass().getSimpleName(), id, e);
+            rebuildAsync();
+        }
+    }
+
+    /**
+     * Строит индекс заново по всей таблице в новой структуре и подменяет ею текущую
+     */
+    protected abstract void build();
+
+    /**
+     * Заменяет в индексе книгу её текущей строкой; удалённая книга убирается
+     */
+    protected abstract void reload(Long id);
+}
@@ -0,0 +1,170 @@
+package ru.liga.book.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.liga.book.dto.BookSummary;
+import ru.liga.book.dto.LeaderboardMetric;
+import ru.liga.book.util.TopK;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Рейтинги книг (самые высоко оценённые и самые оцениваемые) по всему каталогу, по языку и по десятилетию
+ * издания. На каждую корзину хранится ограниченный {@link TopK}, построенный по таблице books при старте
+ * и после импорта. Изменения книги и её оценок перечитываются из базы после коммита ({@link BookIndex}); чтение отдаёт
+ * готовый список корзины без обращения к базе.
+ */
+@Component
+public class BookLeaderboard extends BookIndex {
+
+    public static final int MAX_LIMIT = 50;
+
+    private static final Logger log = LoggerFactory.getLogger(BookLeaderboard.class);
+
+    /**
+     * С запасом: книги, опустившиеся из топа, не сразу оставляют его неполным
+     */
+    private static final int CAPACITY = MAX_LIMIT * 2;
+    private static final int FETCH_SIZE = 10_000;
+    private static final String ALL = "all";
+    private static final String SELECT = "SELECT id, isbn, isbn13, name, original_publication_year, original_title, "
+            + "title, lang_code, small_image_url, rating_count, rating_avg FROM books";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int minRatingCount;
+
+    private volatile Map<Key, Board> boards = new ConcurrentHashMap<>();
+
+    /**
+     * @param minRatingCount сколько оценок нужно книге, чтобы попасть в {@link LeaderboardMetric#TOP_RATED}
+     */
+    public BookLeaderboard(DataSource dataSource,
+                           @Value("${application.leaderboard.min-rating-count:100}") int minRatingCount) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.minRatingCount = minRatingCount;
+    }
+
+    /**
+     * До limit книг корзины: языка, десятилетия или (если оба null) всего каталога
+     */
+    public List<BookSummary> top(LeaderboardMetric metric, String langCode, Integer decade, int limit) {
+        Board board = boards.get(new Key(metric, bucket(langCode, decade)));
+        if (board == null) {
+            return List.of();
+        }
+        List<BookSummary> top = board.snapshot;
+        return top.size() <= limit ? top : top.subList(0, limit);
+    }
+
+    @Override
+    protected void build() {
+        long start = System.currentTimeMillis();
+        Map<Key, Board> rebuilt = new ConcurrentHashMap<>();
+        jdbcTemplate.query(SELECT, rs -> {
+            place(rebuilt, summary(rs, 0));
+        });
+        rebuilt.values().forEach(Board::publish);
+        boards = rebuilt;
+        log.info("Book leaderboard rebuilt: {} boards in {} ms", rebuilt.size(), System.currentTimeMillis() - start);
+    }
+
+    @Override
+    protected void reload(Long id) {
+        List<BookSummary> books = jdbcTemplate.query(SELECT + " WHERE id = ?", BookLeaderboard::summary, id);
+        Map<Key, Board> current = boards;
+        List<Board> changed = new ArrayList<>();
+        for (Board board : current.values()) {
+            if (board.top.remove(id)) {
+                changed.add(board);
+            }
+        }
+        if (!books.isEmpty()) {
+            changed.addAll(place(current, books.get(0)));
+        }
+        boolean incomplete = false;
+        for (Board board : changed) {
+            board.publish();
+            incomplete |= board.top.isIncomplete(MAX_LIMIT);
+        }
+        if (incomplete) {
+            rebuildAsync();
+        }
+    }
+
+    /**
+     * Кладёт книгу во все корзины, куда она подходит
+     */
+    private List<Board> place(Map<Key, Board> target, BookSummary book) {
+        List<Board> placed = new ArrayList<>();
+        int ratingCount = book.getRatingCount() == null ? 0 : book.getRatingCount();
+        for (String bucket : buckets(book)) {
+            placed.add(offer(target, new Key(LeaderboardMetric.MOST_RATED, bucket), book, ratingCount));
+            if (ratingCount >= minRatingCount && book.getRatingAvg() != null) {
+                placed.add(offer(target, new Key(LeaderboardMetric.TOP_RATED, bucket), book, book.getRatingAvg()));
+            }
+        }
+        return placed;
+    }
+
+    private static Board offer(Map<Key, Board> target, Key key, BookSummary book, double score) {
+        Board board = target.computeIfAbsent(key, k -> new Board());
+        board.top.offer(book.getId(), score, book);
+        return board;
+    }
+
+    private static List<String> buckets(BookSummary book) {
+        List<String> buckets = new ArrayList<>(3);
+        buckets.add(ALL);
+        if (book.getLangCode() != null) {
+            buckets.add(bucket(book.getLangCode(), null));
+        }
+        if (book.getOriginalPublicationYear() != null) {
+            buckets.add(bucket(null, decade(book.getOriginalPublicationYear())));
+        }
+        return buckets;
+    }
+
+    private static String bucket(String langCode, Integer decade) {
+        if (langCode != null) {
+            return "lang:" + langCode;
+        }
+        return decade != null ? "decade:" + decade : ALL;
+    }
+
+    private static int decade(double year) {
+        return (int) Math.floor(year / 10) * 10;
+    }
+
+    private static BookSummary summary(ResultSet rs, int rowNum) throws SQLException {
+        return new BookSummary(rs.getLong(1), rs.getString(2), rs.getObject(3, Long.class), rs.getString(4),
+                rs.getObject(5, Double.class), rs.getString(6), rs.getString(7), rs.getString(8), rs.getString(9),
+                rs.getObject(10, Integer.class), rs.getObject(11, Double.class));
+    }
+
+    private record Key(LeaderboardMetric metric, String bucket) {
+    }
+
+    /**
+     * Опубликованный топ меняется только под монитором BookLeaderboard, snapshot читается без блокировок
+     */
+    private static final class Board {
+        private final TopK<BookSummary> top = new TopK<>(CAPACITY);
+
+        private volatile List<BookSummary> snapshot = List.of();
+
+        private void publish() {
+            snapshot = List.copyOf(top.top(MAX_LIMIT));
+        }
+    }
+}
@@ -1,30 +1,94 @@
 package ru.liga.book.service.impl;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+import ru.liga.book.dto.BookBatch;
+import ru.liga.book.dto.BookCard;
+import ru.liga.book.dto.BookFacets;
+import ru.liga.book.dto.BookFilter;
+import ru.liga.book.dto.BookSuggestion;
+import ru.liga.book.dto.BookSummary;
+import ru.liga.book.dto.CursorPage;
+import ru.liga.book.dto.FacetFilter;
+import ru.liga.book.dto.IsbnLookup;
+import ru.liga.book.dto.LeaderboardMetric;
+import ru.liga.book.dto.ReviewSummary;
+import ru.liga.book.dto.Revision;
+import ru.liga.book.dto.SearchPage;
+import ru.liga.book.dto.SimilarBook;
+import ru.liga.book.dto.SimilarityMetric;
 import ru.liga.book.exception.BookNotFoundException;
 import ru.liga.book.model.Book;
 import ru.liga.book.repository.BookRepository;
+import ru.liga.book.repository.BookSpecifications;
+import ru.liga.book.repository.ReviewRepository;
 import ru.liga.book.service.BookService;
+import ru.liga.book.util.FullTextQuery;
+import ru.liga.book.util.Isbn;
+import ru.liga.book.util.PrefixIndex;
+import ru.liga.book.util.Ratings;
+import ru.liga.book.util.SeekCursor;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class BookServiceImpl implements BookService {
 
     private static final String BOOK_NOT_FOUND = "Book with ID %d not found";
-    private static final String BOOKS_NOT_FOUND_BY_TITLE = "No books found with title containing '%s'";
+    private static final String BOOKS_NOT_FOUND_BY_TITLE = "No books found matching '%s'";
     private static final String BOOKS_NOT_FOUND_BY_ISBN = "No books found with ISBN '%s'";
     private static final String BOOK_ALREADY_EXISTS = "Book with ISBN %s already exists";
+    private static final String INVALID_ISBN = "Invalid ISBN '%s'";
+    private static final int MAX_ISBN_LOOKUP = 1000;
+    private static final int MAX_BATCH_IDS = 500;
+    private static final int MAX_SIMILAR_BOOKS = 50;
+    private static final int CARD_REVIEWS = 20;
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    private static final String TITLE_CURSOR = "title";
+    private static final String YEAR_CURSOR = "year";
+    private static final Set<String> SORT_PROPERTIES =
+            Set.of("id", "title", "name", "originalPublicationYear", "ratingAvg", "ratingCount");
 
     private final BookRepository bookRepository;
 
+    private final ReviewRepository reviewRepository;
+
+    private final BookSuggestionIndex bookSuggestionIndex;
+
+    private final BookLeaderboard bookLeaderboard;
+
+    private final BookFacetIndex bookFacetIndex;
+
     @Override
-    public Page<Book> findAllBooks(Pageable pageable) {
-        Page<Book> books = bookRepository.findAll(pageable);
+    public Page<BookSummary> findAllBooks(BookFilter filter, Pageable pageable) {
+        for (Sort.Order order : pageable.getSort()) {
+            if (!SORT_PROPERTIES.contains(order.getProperty())) {
+                throw new IllegalArgumentException("Unsupported sort property '" + order.getProperty()
+                        + "', expected one of " + SORT_PROPERTIES);
+            }
+        }
+        if (filter.getYearFrom() != null && filter.getYearTo() != null && filter.getYearFrom() > filter.getYearTo()) {
+            throw new IllegalArgumentException("yearFrom must not be greater than yearTo");
+        }
+        Page<BookSummary> books = bookRepository.findSummaries(BookSpecifications.of(filter), pageable);
         if (books.isEmpty()) {
             throw new BookNotFoundException("No books found");
         }
@@ -32,27 +96,113 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
-    public Optional<Book> findBookById(Long id) {
-        return Optional.ofNullable(bookRepository.findById(id)
-                .orElseThrow(() -> new BookNotFoundException(String.format(BOOK_NOT_FOUND, id))));
+    public BookFacets findFacets(FacetFilter filter) {
+        if (filter.getDecade() != null) {
+            for (Integer decade : filter.getDecade()) {
+                if (decade == null || decade % 10 != 0) {
+                    throw new IllegalArgumentException("Decade must be a multiple of 10: " + decade);
+                }
+            }
+        }
+        if (filter.getRating() != null) {
+            for (Integer rating : filter.getRating()) {
+                if (rating == null || rating < Ratings.MIN || rating >= Ratings.MAX) {
+                    throw new IllegalArgumentException("Rating bucket must be between " + Ratings.MIN + " and "
+                            + (Ratings.MAX - 1) + ": " + rating);
+                }
+            }
+        }
+        return bookFacetIndex.count(filter);
+    }
+
+    /**
+     * Карточка кешируется ({@link BookCardCache}). sync: одновременные промахи по книге дают один запрос,
+     * а удаление из кеша дожидается идущей загрузки и не оставляет в нём старую карточку
+     */
+    @Override
+    @Cacheable(cacheNames = BookCardCache.NAME, key = "#id", sync = true)
+    public BookCard findBookCard(Long id) {
+        Book book = bookRepository.findById(id)
+                .orElseThrow(() -> new BookNotFoundException(String.format(BOOK_NOT_FOUND, id)));
+        Page<ReviewSummary> reviews = reviewRepository.findSummariesByBookId(id, PageRequest.of(0, CARD_REVIEWS));
+        return BookCard.builder()
+                .id(book.getId())
+                .isbn(book.getIsbn())
+                .isbn13(book.getIsbn13())
+                .name(book.getName())
+                .originalPublicationYear(book.getOriginalPublicationYear())
+                .originalTitle(book.getOriginalTitle())
+                .title(book.getTitle())
+                .langCode(book.getLangCode())
+                .imageUrl(book.getImageUrl())
+                .smallImageUrl(book.getSmallImageUrl())
+                .ratingCount(book.getRatingCount())
+                .ratingAvg(book.getRatingAvg())
+                .ratings1(book.getRatings1())
+                .ratings2(book.getRatings2())
+                .ratings3(book.getRatings3())
+                .ratings4(book.getRatings4())
+                .ratings5(book.getRatings5())
+                .reviewCount(reviews.getTotalElements())
+                .reviews(reviews.getContent())
+                .revision(Revision.of(book.getVersion(), book.getUpdatedAt(), book.getReviewsUpdatedAt()))
+                .build();
+    }
+
+    @Override
+    public BookBatch findBooksByIds(List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > MAX_BATCH_IDS) {
+            throw new IllegalArgumentException("Number of ids must be between 1 and " + MAX_BATCH_IDS);
+        }
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        Map<Long, BookSummary> found = bookRepository.findSummariesByIdIn(requested).stream()
+                .collect(Collectors.toMap(BookSummary::getId, Function.identity()));
+        List<BookSummary> books = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : requested) {
+            BookSummary book = found.get(id);
+            if (book == null) {
+                missing.add(id);
+            } else {
+                books.add(book);
+            }
+        }
+        return new BookBatch(books, missing);
     }
 
     @Override
     public Book saveBook(Book book) {
-        bookRepository.findByIsbn(book.getIsbn(), Pageable.unpaged()).stream()
-                .findFirst()
-                .ifPresent(b -> {
-                    throw new IllegalArgumentException(String.format(BOOK_ALREADY_EXISTS, book.getIsbn()));
-                });
-        return bookRepository.save(book);
+        normalizeIsbns(book);
+        Ratings.fromHistogram(book);
+        if (book.getIsbn13() != null && bookRepository.existsByIsbn13(book.getIsbn13())) {
+            throw new IllegalArgumentException(String.format(BOOK_ALREADY_EXISTS, book.getIsbn13()));
+        }
+        Book saved = bookRepository.save(book);
+        bookSuggestionIndex.refresh(saved.getId());
+        bookLeaderboard.refresh(saved.getId());
+        bookFacetIndex.refresh(saved.getId());
+        return saved;
     }
 
+    /**
+     * Загрузка, проверки и сохранение - одна транзакция: книга сохраняется с той version, что была прочитана
+     */
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = BookCardCache.NAME, key = "#id")
     public Book updateBook(Long id, Book bookDetails) {
         Book existingBook = bookRepository.findById(id)
                 .orElseThrow(() -> new BookNotFoundException(String.format(BOOK_NOT_FOUND, id)));
         updateBookFields(existingBook, bookDetails);
-        return bookRepository.save(existingBook);
+        normalizeIsbns(existingBook);
+        if (existingBook.getIsbn13() != null && bookRepository.existsByIsbn13AndIdNot(existingBook.getIsbn13(), id)) {
+            throw new IllegalArgumentException(String.format(BOOK_ALREADY_EXISTS, existingBook.getIsbn13()));
+        }
+        Book saved = bookRepository.save(existingBook);
+        bookSuggestionIndex.refresh(saved.getId());
+        bookLeaderboard.refresh(saved.getId());
+        bookFacetIndex.refresh(saved.getId());
+        return saved;
     }
 
     private void updateBookFields(Book existingBook, Book bookDetails) {
@@ -65,30 +215,70 @@ public class BookServiceImpl implements BookService {
         existingBook.setLangCode(bookDetails.getLangCode());
         existingBook.setImageUrl(bookDetails.getImageUrl());
         existingBook.setSmallImageUrl(bookDetails.getSmallImageUrl());
-        existingBook.setRatingCount(bookDetails.getRatingCount());
-        existingBook.setRatingAvg(bookDetails.getRatingAvg());
+    }
+
+    /**
+     * ISBN из запроса приводятся к виду, в котором их пишет импорт; недостающий выводится из другого
+     */
+    private static void normalizeIsbns(Book book) {
+        String isbn10 = null;
+        if (StringUtils.hasText(book.getIsbn())) {
+            isbn10 = Isbn.normalize10(book.getIsbn());
+            if (isbn10 == null) {
+                throw new IllegalArgumentException(String.format(INVALID_ISBN, book.getIsbn()));
+            }
+        }
+        Long isbn13 = book.getIsbn13();
+        if (isbn13 != null && !Isbn.isValid13(isbn13)) {
+            throw new IllegalArgumentException(String.format(INVALID_ISBN, isbn13));
+        }
+        if (isbn13 == null && isbn10 != null) {
+            isbn13 = Isbn.fromIsbn10(isbn10);
+        }
+        if (isbn10 == null && isbn13 != null) {
+            isbn10 = Isbn.toIsbn10(isbn13);
+        }
+        book.setIsbn(isbn10);
+        book.setIsbn13(isbn13);
     }
 
     @Override
+    @CacheEvict(cacheNames = BookCardCache.NAME, key = "#id")
     public void deleteBook(Long id) {
         if (!bookRepository.existsById(id)) {
             throw new BookNotFoundException(String.format(BOOK_NOT_FOUND, id));
         }
         bookRepository.deleteById(id);
+        bookSuggestionIndex.refresh(id);
+        bookLeaderboard.refresh(id);
+        bookFacetIndex.refresh(id);
     }
 
     @Override
-    public Page<Book> findBooksByTitle(String title, Pageable pageable) {
-        Page<Book> books = bookRepository.findByNameContainingIgnoreCase(title, pageable);
-        if (books.isEmpty()) {
+    public SearchPage<BookSummary> findBooksByTitle(String title, Pageable pageable) {
+        Page<Long> ids = bookRepository.searchIds(FullTextQuery.prefixQuery(title), unsorted(pageable));
+        if (ids.isEmpty()) {
             throw new BookNotFoundException(String.format(BOOKS_NOT_FOUND_BY_TITLE, title));
         }
-        return books;
+        Map<Long, BookSummary> books = bookRepository.findSummariesByIdIn(ids.getContent()).stream()
+                .collect(Collectors.toMap(BookSummary::getId, Function.identity()));
+        // книга могла быть удалена между поиском id и чтением карточек
+        List<BookSummary> content = ids.getContent().stream()
+                .map(books::get)
+                .filter(Objects::nonNull)
+                .toList();
+        boolean truncated = ids.getTotalElements() > BookRepository.SEARCH_CANDIDATES;
+        return new SearchPage<>(content, ids.getPageable(),
+                Math.min(ids.getTotalElements(), BookRepository.SEARCH_CANDIDATES), truncated);
     }
 
     @Override
-    public Page<Book> findBooksByIsbn(String isbn, Pageable pageable) {
-        Page<Book> books = bookRepository.findByIsbn(isbn, pageable);
+    public Page<BookSummary> findBooksByIsbn(String isbn, Pageable pageable) {
+        Long isbn13 = Isbn.toIsbn13(isbn);
+        if (isbn13 == null) {
+            throw new IllegalArgumentException(String.format(INVALID_ISBN, isbn));
+        }
+        Page<BookSummary> books = bookRepository.findSummariesByIsbn13(isbn13, pageable);
         if (books.isEmpty()) {
             throw new BookNotFoundException(String.format(BOOKS_NOT_FOUND_BY_ISBN, isbn));
         }
@@ -96,8 +286,43 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
-    public Page<Book> findAllBooksSortedByTitle(Pageable pageable) {
-        Page<Book> books = bookRepository.findAllByOrderByTitleAsc(pageable);
+    public IsbnLookup findBooksByIsbns(List<String> isbns) {
+        if (isbns.isEmpty() || isbns.size() > MAX_ISBN_LOOKUP) {
+            throw new IllegalArgumentException("Number of ISBNs must be between 1 and " + MAX_ISBN_LOOKUP);
+        }
+        Map<String, Long> requested = new LinkedHashMap<>();
+        List<String> invalid = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (String isbn : isbns) {
+            if (!seen.add(isbn)) {
+                continue;
+            }
+            Long isbn13 = Isbn.toIsbn13(isbn);
+            if (isbn13 == null) {
+                invalid.add(isbn);
+            } else {
+                requested.put(isbn, isbn13);
+            }
+        }
+        Map<Long, BookSummary> books = requested.isEmpty() ? Map.of()
+                : bookRepository.findSummariesByIsbn13In(new HashSet<>(requested.values())).stream()
+                .collect(Collectors.toMap(BookSummary::getIsbn13, Function.identity()));
+        Map<String, BookSummary> found = new LinkedHashMap<>();
+        List<String> notFound = new ArrayList<>();
+        requested.forEach((isbn, isbn13) -> {
+            BookSummary book = books.get(isbn13);
+            if (book == null) {
+                notFound.add(isbn);
+            } else {
+                found.put(isbn, book);
+            }
+        });
+        return new IsbnLookup(found, notFound, invalid);
+    }
+
+    @Override
+    public Page<BookSummary> findAllBooksSortedByTitle(Pageable pageable) {
+        Page<BookSummary> books = bookRepository.findSummariesOrderByTitle(unsorted(pageable));
         if (books.isEmpty()) {
             throw new BookNotFoundException("No books found when sorting by title");
         }
@@ -105,11 +330,117 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
-    public Page<Book> findAllBooksSortedByPublicationYear(Pageable pageable) {
-        Page<Book> books = bookRepository.findAllByOrderByOriginalPublicationYearDesc(pageable);
+    public Page<BookSummary> findAllBooksSortedByPublicationYear(Pageable pageable) {
+        Page<BookSummary> books = bookRepository.findSummariesOrderByPublicationYear(unsorted(pageable));
         if (books.isEmpty()) {
             throw new BookNotFoundException("No books found when sorting by original publication year");
         }
         return books;
     }
+
+    @Override
+    public CursorPage<BookSummary> findBooksByTitleAfter(String after, int size) {
+        checkCursorPageSize(size);
+        SeekCursor cursor = after == null ? null : SeekCursor.decode(after, TITLE_CURSOR);
+        List<BookSummary> rows = new ArrayList<>(size + 1);
+        if (cursor == null) {
+            rows.addAll(bookRepository.findFirstByTitle(PageRequest.of(0, size + 1)));
+        } else if (cursor.value() != null) {
+            rows.addAll(bookRepository.findByTitleAfter(cursor.value(), cursor.id(), PageRequest.of(0, size + 1)));
+        }
+        if (rows.size() <= size) {
+            long afterId = cursor == null || cursor.value() != null ? Long.MIN_VALUE : cursor.id();
+            rows.addAll(bookRepository.findUntitledAfter(afterId, PageRequest.of(0, size + 1 - rows.size())));
+        }
+        return CursorPage.of(rows, size, book -> SeekCursor.encode(TITLE_CURSOR, book.getId(), book.getTitle()));
+    }
+
+    @Override
+    public CursorPage<BookSummary> findBooksByPublicationYearBefore(String after, int size) {
+        checkCursorPageSize(size);
+        SeekCursor cursor = after == null ? null : SeekCursor.decode(after, YEAR_CURSOR);
+        List<BookSummary> rows = new ArrayList<>(size + 1);
+        if (cursor == null) {
+            rows.addAll(bookRepository.findFirstByYear(PageRequest.of(0, size + 1)));
+        } else if (cursor.value() != null) {
+            rows.addAll(bookRepository.findByYearBefore(Double.valueOf(cursor.value()), cursor.id(),
+                    PageRequest.of(0, size + 1)));
+        }
+        if (rows.size() <= size) {
+            long beforeId = cursor == null || cursor.value() != null ? Long.MAX_VALUE : cursor.id();
+            rows.addAll(bookRepository.findUndatedBefore(beforeId, PageRequest.of(0, size + 1 - rows.size())));
+        }
+        return CursorPage.of(rows, size, book -> SeekCursor.encode(YEAR_CURSOR, book.getId(),
+                book.getOriginalPublicationYear() == null ? null : book.getOriginalPublicationYear().toString()));
+    }
+
+    private static void checkCursorPageSize(int size) {
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new IllegalArgumentException("Size must be between 1 and " + MAX_CURSOR_PAGE_SIZE);
+        }
+    }
+
+    /**
+     * Порядок уже задан в запросе, сортировка из параметров только продублировала бы его
+     */
+    private static Pageable unsorted(Pageable pageable) {
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+    }
+
+    @Override
+    public List<BookSuggestion> autocomplete(String prefix, int limit) {
+        if (PrefixIndex.normalize(prefix).isEmpty()) {
+            throw new IllegalArgumentException("Prefix must not be empty");
+        }
+        if (limit < 1 || limit > BookSuggestionIndex.MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + BookSuggestionIndex.MAX_LIMIT);
+        }
+        List<Long> ids = bookSuggestionIndex.suggest(prefix, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, BookSuggestion> suggestions = bookRepository.findSuggestionsByIdIn(ids).stream()
+                .collect(Collectors.toMap(BookSuggestion::getId, Function.identity()));
+        return ids.stream()
+                .map(suggestions::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public List<BookSummary> findLeaderboard(LeaderboardMetric metric, String langCode, Integer decade, int limit) {
+        if (langCode != null && decade != null) {
+            throw new IllegalArgumentException("Leaderboards are kept either per language or per decade, not both");
+        }
+        if (decade != null && decade % 10 != 0) {
+            throw new IllegalArgumentException("Decade must be a multiple of 10: " + decade);
+        }
+        if (limit < 1 || limit > BookLeaderboard.MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + BookLeaderboard.MAX_LIMIT);
+        }
+        return bookLeaderboard.top(metric, langCode, decade, limit);
+    }
+
+    @Override
+    public List<SimilarBook> findSimilarBooks(Long id, SimilarityMetric metric, int limit) {
+        if (limit < 1 || limit > MAX_SIMILAR_BOOKS) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_SIMILAR_BOOKS);
+        }
+        List<BookRepository.NeighbourView> neighbours = bookRepository.findNeighbours(id, metric.name(), limit);
+        if (neighbours.isEmpty()) {
+            if (!bookRepository.existsById(id)) {
+                throw new BookNotFoundException(String.format(BOOK_NOT_FOUND, id));
+            }
+            return List.of();
+        }
+        Map<Long, BookSummary> books = bookRepository.findSummariesByIdIn(neighbours.stream()
+                        .map(BookRepository.NeighbourView::getNeighbourId)
+                        .toList()).stream()
+                .collect(Collectors.toMap(BookSummary::getId, Function.identity()));
+        return neighbours.stream()
+                .filter(neighbour -> books.containsKey(neighbour.getNeighbourId()))
+                .map(neighbour -> new SimilarBook(books.get(neighbour.getNeighbourId()), neighbour.getScore(),
+                        neighbour.getCommonUsers()))
+                .toList();
+    }
 }
\ No newline at end of file
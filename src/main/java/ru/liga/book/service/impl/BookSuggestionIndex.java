@@ -0,0 +1,140 @@
+package ru.liga.book.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.liga.book.util.PrefixIndex;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Индекс автодополнения по названиям и авторам книг. Основа - {@link PrefixIndex}, построенный по таблице books
+ * при старте и после импорта. Книги, изменённые через API после построения, лежат в небольшом оверлее
+ * и перекрывают записи основы до следующей перестройки.
+ */
+@Component
+public class BookSuggestionIndex extends BookIndex {
+
+    public static final int MAX_LIMIT = 20;
+
+    private static final Logger log = LoggerFactory.getLogger(BookSuggestionIndex.class);
+
+    private static final int TOP_K = MAX_LIMIT * 2;
+    private static final int SCAN_THRESHOLD = 256;
+    private static final int REBUILD_THRESHOLD = 1000;
+    private static final int FETCH_SIZE = 10_000;
+    private static final String SELECT = "SELECT id, title, name, rating_count FROM books";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, Change> overlay = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile PrefixIndex base = PrefixIndex.builder().build(TOP_K, SCAN_THRESHOLD);
+
+    public BookSuggestionIndex(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+    }
+
+    /**
+     * Id книг, у которых название или один из авторов начинается с префикса, по убыванию ratingCount
+     */
+    public List<Long> suggest(String prefix, int limit) {
+        String normalized = PrefixIndex.normalize(prefix);
+        List<PrefixIndex.Hit> found = base.search(normalized, TOP_K);
+        List<PrefixIndex.Hit> hits = withoutOverlay(found);
+        if (hits.size() < limit && found.size() == TOP_K) {
+            // книги оверлея вытеснили кандидатов основы - добираем из основы столько же сверх TOP_K
+            hits.clear();
+            hits.addAll(withoutOverlay(base.search(normalized, TOP_K + overlay.size())));
+        }
+        overlay.forEach((id, change) -> {
+            if (!change.deleted() && change.keys().stream().anyMatch(key -> key.startsWith(normalized))) {
+                hits.add(new PrefixIndex.Hit(id, change.weight()));
+            }
+        });
+        return hits.stream()
+                .sorted(Comparator.comparingInt(PrefixIndex.Hit::weight).reversed())
+                .map(PrefixIndex.Hit::id)
+                .distinct()
+                .limit(limit)
+                .toList();
+    }
+
+    private List<PrefixIndex.Hit> withoutOverlay(List<PrefixIndex.Hit> found) {
+        List<PrefixIndex.Hit> hits = new ArrayList<>(found.size());
+        for (PrefixIndex.Hit hit : found) {
+            if (!overlay.containsKey(hit.id())) {
+                hits.add(hit);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Строит основу заново. Изменения оверлея, сделанные до чтения таблицы, уже есть в базе и удаляются.
+     */
+    @Override
+    protected void build() {
+        long start = System.currentTimeMillis();
+        long rebuiltSequence = sequence.get();
+        PrefixIndex.Builder builder = PrefixIndex.builder();
+        jdbcTemplate.query(SELECT, rs -> {
+            long id = rs.getLong(1);
+            int weight = rs.getInt(4);
+            for (String key : keys(rs.getString(2), rs.getString(3))) {
+                builder.add(key, id, weight);
+            }
+        });
+        base = builder.build(TOP_K, SCAN_THRESHOLD);
+        overlay.values().removeIf(change -> change.sequence() <= rebuiltSequence);
+        log.info("Book suggestion index rebuilt: {} keys in {} ms", base.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Кладёт книгу в оверлей; удалённая книга перекрывает запись основы пустой
+     */
+    @Override
+    protected void reload(Long id) {
+        Change change = jdbcTemplate.query(SELECT + " WHERE id = ?", rs -> rs.next()
+                ? new Change(sequence.incrementAndGet(), keys(rs.getString(2), rs.getString(3)), rs.getInt(4), false)
+                : new Change(sequence.incrementAndGet(), List.of(), 0, true), id);
+        overlay.put(id, change);
+        if (overlay.size() > REBUILD_THRESHOLD) {
+            rebuildAsync();
+        }
+    }
+
+    /**
+     * Название и каждый автор из name ("J.K. Rowling, Mary GrandPré") - отдельные ключи
+     */
+    private static List<String> keys(String title, String name) {
+        List<String> keys = new ArrayList<>();
+        addKey(keys, title);
+        if (name != null) {
+            for (String author : name.split(",")) {
+                addKey(keys, author);
+            }
+        }
+        return keys;
+    }
+
+    private static void addKey(List<String> keys, String value) {
+        String key = PrefixIndex.normalize(value);
+        if (!key.isEmpty()) {
+            keys.add(key);
+        }
+    }
+
+    private record Change(long sequence, List<String> keys, int weight, boolean deleted) {
+    }
+}
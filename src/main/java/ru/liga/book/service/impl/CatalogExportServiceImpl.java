@@ -0,0 +1,255 @@
+package ru.liga.book.service.impl;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.liga.book.batch.PgCopyItemWriter;
+import ru.liga.book.dto.ExportFormat;
+import ru.liga.book.dto.ReviewSummary;
+import ru.liga.book.model.Book;
+import ru.liga.book.repository.BookRepository;
+import ru.liga.book.repository.ReviewRepository;
+import ru.liga.book.service.CatalogExportService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Выгрузка каталога курсором: книги читаются {@link BookRepository#streamAllOrderById} порциями по fetch size
+ * и сразу пишутся в ответ, после записи каждая книга отсоединяется от контекста персистентности.
+ * Отзывы идут вторым курсором в порядке book_id и сливаются с книгами по id, поэтому память не зависит
+ * ни от размера каталога, ни от числа отзывов у книги. Отдельная выгрузка отзывов ({@link #exportReviews})
+ * идёт тем же курсором по плоским строкам без сущностей.
+ */
+@Service
+public class CatalogExportServiceImpl implements CatalogExportService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final List<Column> COLUMNS = List.of(
+            new Column("id", "id", Book::getId),
+            new Column("isbn", "isbn", Book::getIsbn),
+            new Column("isbn13", "isbn13", Book::getIsbn13),
+            new Column("name", "name", Book::getName),
+            new Column("originalPublicationYear", "original_publication_year", Book::getOriginalPublicationYear),
+            new Column("originalTitle", "original_title", Book::getOriginalTitle),
+            new Column("title", "title", Book::getTitle),
+            new Column("langCode", "lang_code", Book::getLangCode),
+            new Column("imageUrl", "image_url", Book::getImageUrl),
+            new Column("smallImageUrl", "small_image_url", Book::getSmallImageUrl),
+            new Column("ratingCount", "rating_count", Book::getRatingCount),
+            new Column("ratingAvg", "rating_avg", Book::getRatingAvg),
+            new Column("ratings1", "ratings_1", Book::getRatings1),
+            new Column("ratings2", "ratings_2", Book::getRatings2),
+            new Column("ratings3", "ratings_3", Book::getRatings3),
+            new Column("ratings4", "ratings_4", Book::getRatings4),
+            new Column("ratings5", "ratings_5", Book::getRatings5));
+
+    private final BookRepository bookRepository;
+
+    private final ReviewRepository reviewRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public CatalogExportServiceImpl(BookRepository bookRepository, ReviewRepository reviewRepository,
+                                    ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.bookRepository = bookRepository;
+        this.reviewRepository = reviewRepository;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Тело ответа пишется уже после выхода из контроллера, в потоке асинхронной обработки запроса:
+     * транзакция, без которой Postgres не держит курсор, открывается там же
+     */
+    @Override
+    public StreamingResponseBody exportBooks(ExportFormat format, boolean withReviews, boolean gzip) {
+        if (withReviews && format != ExportFormat.NDJSON) {
+            throw new IllegalArgumentException("Reviews can only be exported as NDJSON");
+        }
+        return stream(gzip, out -> write(format, withReviews, out));
+    }
+
+    /**
+     * Все отзывы плоскими строками NDJSON в порядке id
+     */
+    @Override
+    public StreamingResponseBody exportReviews(boolean gzip) {
+        return stream(gzip, out -> {
+            try (Stream<ReviewSummary> reviews = reviewRepository.streamSummariesOrderById()) {
+                writeReviews(reviews, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private StreamingResponseBody stream(boolean gzip, Consumer<OutputStream> body) {
+        return out -> {
+            OutputStream target = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+            try {
+                readOnlyTransaction.executeWithoutResult(status -> body.accept(target));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (target instanceof GZIPOutputStream gzipStream) {
+                gzipStream.finish();
+            }
+        };
+    }
+
+    private void write(ExportFormat format, boolean withReviews, OutputStream out) {
+        try (Stream<Book> books = bookRepository.streamAllOrderById()) {
+            if (format == ExportFormat.CSV) {
+                writeCsv(books, out);
+            } else if (withReviews) {
+                try (Stream<ReviewSummary> reviews = reviewRepository.streamSummariesOrderByBookId()) {
+                    writeNdjson(books, reviews.iterator(), out);
+                }
+            } else {
+                writeNdjson(books, null, out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeNdjson(Stream<Book> books, Iterator<ReviewSummary> reviews, OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // строки NDJSON разделяет только перевод строки, без пробела между корневыми значениями
+        generator.setRootValueSeparator(null);
+        // ObjectMapper по умолчанию сбрасывает поток после каждого значения, а это по чанку HTTP на отзыв
+        ObjectWriter reviewWriter = objectMapper.writerFor(ReviewSummary.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        ReviewCursor reviewCursor = reviews == null ? null : new ReviewCursor(reviews, reviewWriter);
+        books.forEach(book -> {
+            try {
+                generator.writeStartObject();
+                for (Column column : COLUMNS) {
+                    writeField(generator, column.jsonName(), column.value().apply(book));
+                }
+                if (reviewCursor != null) {
+                    generator.writeArrayFieldStart("reviews");
+                    reviewCursor.writeReviews(book.getId(), generator);
+                    generator.writeEndArray();
+                }
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            entityManager.detach(book);
+        });
+        generator.flush();
+    }
+
+    private void writeReviews(Stream<ReviewSummary> reviews, OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        ObjectWriter reviewWriter = objectMapper.writerFor(ReviewSummary.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        reviews.forEach(review -> {
+            try {
+                reviewWriter.writeValue(generator, review);
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        generator.flush();
+    }
+
+    private static void writeField(JsonGenerator generator, String name, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNullField(name);
+        } else if (value instanceof String text) {
+            generator.writeStringField(name, text);
+        } else if (value instanceof Double number) {
+            generator.writeNumberField(name, number);
+        } else if (value instanceof Integer number) {
+            generator.writeNumberField(name, number);
+        } else {
+            generator.writeNumberField(name, (Long) value);
+        }
+    }
+
+    private void writeCsv(Stream<Book> books, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer.write(String.join(",", COLUMNS.stream().map(Column::csvName).toList()));
+        writer.write('\n');
+        StringBuilder line = new StringBuilder(512);
+        Object[] values = new Object[COLUMNS.size()];
+        books.forEach(book -> {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = COLUMNS.get(i).value().apply(book);
+            }
+            line.setLength(0);
+            PgCopyItemWriter.appendRow(line, values);
+            try {
+                writer.append(line);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            entityManager.detach(book);
+        });
+        writer.flush();
+    }
+
+    private record Column(String jsonName, String csvName, Function<Book, Object> value) {
+    }
+
+    /**
+     * Курсор отзывов, упорядоченных по book_id: отдаёт отзывы очередной книги и останавливается на следующей
+     */
+    private static final class ReviewCursor {
+
+        private final Iterator<ReviewSummary> reviews;
+
+        private final ObjectWriter writer;
+
+        private ReviewSummary next;
+
+        private ReviewCursor(Iterator<ReviewSummary> reviews, ObjectWriter writer) {
+            this.reviews = reviews;
+            this.writer = writer;
+            this.next = reviews.hasNext() ? reviews.next() : null;
+        }
+
+        void writeReviews(long bookId, JsonGenerator generator) throws IOException {
+            while (next != null && next.getBookId() <= bookId) {
+                if (next.getBookId() == bookId) {
+                    writer.writeValue(generator, next);
+                }
+                next = reviews.hasNext() ? reviews.next() : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package ru.liga.book.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.liga.book.batch.InputRowsTasklet;
+import ru.liga.book.dto.ImportProgress;
+import ru.liga.book.dto.StepProgress;
+import ru.liga.book.exception.ImportAlreadyRunningException;
+import ru.liga.book.exception.ImportNotFoundException;
+import ru.liga.book.exception.SimilarityAlreadyRunningException;
+import ru.liga.book.service.ImportJobService;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Запуск importJob через {@link JobExecutions} и прогресс по данным StepExecution из JobExplorer.
+ * Счётчики шагов Spring Batch сохраняет после каждого чанка, поэтому прогресс виден и по партициям;
+ * число строк во входных файлах первый шаг задания кладёт в его контекст ({@link InputRowsTasklet}).
+ */
+@Service
+public class ImportJobServiceImpl implements ImportJobService {
+
+    private final JobExecutions jobExecutions;
+
+    private final Job importJob;
+
+    private final Job similarityJob;
+
+    private final JobExplorer jobExplorer;
+
+    private final Duration progressInterval;
+
+    private final ScheduledExecutorService progressScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "import-progress");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ImportJobServiceImpl(JobExecutions jobExecutions,
+                                @Qualifier("importJob") Job importJob,
+                                @Qualifier("similarityJob") Job similarityJob,
+                                JobExplorer jobExplorer,
+                                @Value("${spring.file.progress-interval:1s}") Duration progressInterval) {
+        this.jobExecutions = jobExecutions;
+        this.importJob = importJob;
+        this.similarityJob = similarityJob;
+        this.jobExplorer = jobExplorer;
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * Не запускается и во время similarityJob: его запись в book_neighbours упала бы на удалённых книгах
+     */
+    @Override
+    public Long startImport() {
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addLong("time", System.currentTimeMillis())
+                .toJobParameters();
+        return jobExecutions.start(importJob, jobParameters, () -> {
+            if (!jobExecutions.findRunning(importJob.getName()).isEmpty()) {
+                throw new ImportAlreadyRunningException("Import is already running");
+            }
+            if (!jobExecutions.findRunning(similarityJob.getName()).isEmpty()) {
+                throw new SimilarityAlreadyRunningException("Similarity job is running, import can start after it");
+            }
+        }).getId();
+    }
+
+    @Override
+    public ImportProgress getProgress(Long executionId) {
+        JobExecution execution = jobExplorer.getJobExecution(executionId);
+        if (execution == null || !importJob.getName().equals(execution.getJobInstance().getJobName())) {
+            throw new ImportNotFoundException("Import execution " + executionId + " not found");
+        }
+        return toProgress(execution);
+    }
+
+    @Override
+    public SseEmitter streamProgress(Long executionId) {
+        getProgress(executionId);
+        SseEmitter emitter = new SseEmitter(0L);
+        AtomicReference<ScheduledFuture<?>> task = new AtomicReference<>();
+        Runnable stop = () -> {
+            ScheduledFuture<?> future = task.get();
+            if (future != null) {
+                future.cancel(false);
+            }
+        };
+        emitter.onCompletion(stop);
+        emitter.onTimeout(stop);
+        emitter.onError(e -> stop.run());
+        task.set(progressScheduler.scheduleAtFixedRate(() -> {
+            if (!sendProgress(emitter, executionId)) {
+                stop.run();
+            }
+        }, 0, progressInterval.toMillis(), TimeUnit.MILLISECONDS));
+        return emitter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        progressScheduler.shutdownNow();
+    }
+
+    /**
+     * @return false, если поток событий закончен (импорт завершился или клиент отключился)
+     */
+    private boolean sendProgress(SseEmitter emitter, Long executionId) {
+        try {
+            ImportProgress progress = getProgress(executionId);
+            emitter.send(SseEmitter.event().name("progress").data(progress));
+            if (!progress.isRunning()) {
+                emitter.complete();
+                return false;
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private ImportProgress toProgress(JobExecution execution) {
+        List<StepExecution> stepExecutions = execution.getStepExecutions().stream()
+                .sorted(Comparator.comparing(StepExecution::getId))
+                .toList();
+        Phase books = Phase.of(stepExecutions, "bookStep", "bookWorkerStep");
+        Phase reviews = Phase.of(stepExecutions, "reviewStep", "reviewWorkerStep");
+        Phase current = reviews.started() ? reviews : books;
+
+        long bookRows = execution.getExecutionContext().getLong(InputRowsTasklet.BOOK_ROWS, 0L);
+        long reviewRows = execution.getExecutionContext().getLong(InputRowsTasklet.REVIEW_ROWS, 0L);
+        boolean running = execution.isRunning();
+        double rowsPerSecond = current.rowsPerSecond();
+        Long eta = null;
+        // пока строки не посчитаны, ETA неизвестна
+        if (running && rowsPerSecond > 0 && bookRows + reviewRows > 0) {
+            long remaining = Math.max(bookRows - books.read, 0) + Math.max(reviewRows - reviews.read, 0);
+            eta = (long) Math.ceil(remaining / rowsPerSecond);
+        }
+
+        return ImportProgress.builder()
+                .executionId(execution.getId())
+                .status(execution.getStatus().name())
+                .running(running)
+                .currentStep(stepExecutions.stream()
+                        .filter(step -> step.getStatus().isRunning() && !step.getStepName().contains(":"))
+                        .reduce((first, second) -> second)
+                        .map(StepExecution::getStepName)
+                        .orElse(null))
+                .readCount(books.read + reviews.read)
+                .writeCount(books.write + reviews.write)
+                .skipCount(books.skip + reviews.skip)
+                .totalRows(bookRows + reviewRows)
+                .rowsPerSecond(rowsPerSecond)
+                .etaSeconds(eta)
+                .steps(stepExecutions.stream().map(ImportJobServiceImpl::toStepProgress).toList())
+                .build();
+    }
+
+    private static StepProgress toStepProgress(StepExecution step) {
+        return StepProgress.builder()
+                .name(step.getStepName())
+                .status(step.getStatus().name())
+                .readCount(step.getReadCount())
+                .writeCount(step.getWriteCount())
+                .filterCount(step.getFilterCount())
+                .skipCount(step.getSkipCount())
+                .rowsPerSecond(rate(step.getReadCount(), step.getStartTime(), step.getEndTime()))
+                .build();
+    }
+
+    private static double rate(long rows, LocalDateTime start, LocalDateTime end) {
+        if (start == null) {
+            return 0;
+        }
+        long millis = Duration.between(start, end == null ? LocalDateTime.now() : end).toMillis();
+        return rows * 1000.0 / Math.max(millis, 1);
+    }
+
+    /**
+     * Счётчики шага загрузки. У разбитого на партиции шага итоговые счётчики появляются только
+     * в конце, поэтому пока идут партиции, суммируются их собственные StepExecution.
+     */
+    private record Phase(long read, long write, long skip, LocalDateTime start, LocalDateTime end) {
+
+        static Phase of(List<StepExecution> stepExecutions, String stepName, String workerName) {
+            List<StepExecution> workers = stepExecutions.stream()
+                    .filter(step -> step.getStepName().startsWith(workerName + ":"))
+                    .toList();
+            List<StepExecution> counted = workers.isEmpty()
+                    ? stepExecutions.stream().filter(step -> step.getStepName().equals(stepName)).toList()
+                    : workers;
+            StepExecution manager = stepExecutions.stream()
+                    .filter(step -> step.getStepName().equals(stepName))
+                    .reduce((first, second) -> second)
+                    .orElse(null);
+            return new Phase(
+                    counted.stream().mapToLong(StepExecution::getReadCount).sum(),
+                    counted.stream().mapToLong(StepExecution::getWriteCount).sum(),
+                    counted.stream().mapToLong(StepExecution::getSkipCount).sum(),
+                    manager == null ? null : manager.getStartTime(),
+                    manager == null ? null : manager.getEndTime());
+        }
+
+        boolean started() {
+            return start != null;
+        }
+
+        double rowsPerSecond() {
+            return rate(read, start, end);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ru.liga.book.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionException;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Запуск заданий Spring Batch через асинхронный JobLauncher и поиск идущих выполнений.
+ * Задания запускаются только этим процессом, поэтому выполнение, которое в базе числится идущим,
+ * но запущено не здесь, оставлено упавшим процессом: оно помечается FAILED, иначе новые запуски
+ * отклонялись бы навсегда.
+ */
+@Component
+public class JobExecutions {
+
+    private static final Logger log = LoggerFactory.getLogger(JobExecutions.class);
+
+    private final JobLauncher asyncJobLauncher;
+
+    private final JobExplorer jobExplorer;
+
+    private final JobRepository jobRepository;
+
+    private final Set<Long> launched = ConcurrentHashMap.newKeySet();
+
+    public JobExecutions(@Qualifier("asyncJobLauncher") JobLauncher asyncJobLauncher, JobExplorer jobExplorer,
+                         JobRepository jobRepository) {
+        this.asyncJobLauncher = asyncJobLauncher;
+        this.jobExplorer = jobExplorer;
+        this.jobRepository = jobRepository;
+    }
+
+    /**
+     * Идущие выполнения задания, запущенные этим процессом; брошенные по пути помечаются FAILED
+     */
+    public synchronized List<JobExecution> findRunning(String jobName) {
+        List<JobExecution> running = new ArrayList<>();
+        for (JobExecution execution : jobExplorer.findRunningJobExecutions(jobName)) {
+            if (launched.contains(execution.getId())) {
+                running.add(execution);
+            } else {
+                abandon(execution);
+            }
+        }
+        return running;
+    }
+
+    /**
+     * Запуск после проверки precondition (бросает исключение, если запускать нельзя). Проверка и запуск
+     * идут под одним монитором, поэтому два несовместимых задания не проходят проверку одновременно.
+     */
+    public synchronized JobExecution start(Job job, JobParameters jobParameters, Runnable precondition) {
+        precondition.run();
+        return start(job, jobParameters);
+    }
+
+    /**
+     * Под тем же монитором, что и {@link #findRunning}: новое выполнение не примут за брошенное
+     */
+    public synchronized JobExecution start(Job job, JobParameters jobParameters) {
+        try {
+            JobExecution execution = asyncJobLauncher.run(job, jobParameters);
+            launched.add(execution.getId());
+            log.info("{} started: execution {}", job.getName(), execution.getId());
+            return execution;
+        } catch (JobExecutionException e) {
+            throw new IllegalStateException("Cannot start " + job.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void abandon(JobExecution execution) {
+        log.warn("{} execution {} was left {} by a previous run, marking it FAILED",
+                execution.getJobInstance().getJobName(), execution.getId(), execution.getStatus());
+        LocalDateTime now = LocalDateTime.now();
+        ExitStatus exitStatus = ExitStatus.FAILED.addExitDescription("Abandoned by a stopped application");
+        for (StepExecution step : execution.getStepExecutions()) {
+            if (step.getStatus().isRunning()) {
+                step.setStatus(BatchStatus.FAILED);
+                step.setExitStatus(exitStatus);
+                step.setEndTime(now);
+                jobRepository.update(step);
+            }
+        }
+        execution.setStatus(BatchStatus.FAILED);
+        execution.setExitStatus(exitStatus);
+        execution.setEndTime(now);
+        jobRepository.update(execution);
+    }
+}
@@ -2,33 +2,73 @@ package ru.liga.book.service.impl;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.liga.book.dto.CursorPage;
+import ru.liga.book.dto.ReviewSummary;
+import ru.liga.book.dto.Revision;
+import ru.liga.book.exception.BookNotFoundException;
 import ru.liga.book.exception.ReviewNotFoundException;
 import ru.liga.book.model.Review;
+import ru.liga.book.repository.BookRepository;
 import ru.liga.book.repository.ReviewRepository;
 import ru.liga.book.service.ReviewService;
+import ru.liga.book.util.Ratings;
+import ru.liga.book.util.SeekCursor;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Objects;
 
+/**
+ * Изменения отзывов идут в одной транзакции с изменением агрегатов оценок книги
+ * ({@link BookRepository#applyRating}), поэтому списки книг читают готовые согласованные значения.
+ */
 @Service
 @RequiredArgsConstructor
 public class ReviewServiceImpl implements ReviewService {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    private static final String ID_CURSOR = "id";
+
     private final ReviewRepository reviewRepository;
 
+    private final BookRepository bookRepository;
+
+    private final BookCardCache bookCardCache;
+
+    private final BookSuggestionIndex bookSuggestionIndex;
+
+    private final BookLeaderboard bookLeaderboard;
+
+    private final BookFacetIndex bookFacetIndex;
+
     @Override
+    @Transactional
     public Review addReview(Review review) {
-        return reviewRepository.save(review);
+        checkRating(review.getRating());
+        Review saved = reviewRepository.save(review);
+        if (saved.getBook() != null) {
+            applyRating(saved.getBook().getId(), saved.getRating(), 1);
+            reviewsChanged(saved.getBook().getId());
+        }
+        return saved;
     }
 
     @Override
-    public List<Review> findAllReviews() {
-        return reviewRepository.findAll();
+    public CursorPage<ReviewSummary> findReviewsAfter(String after, int size) {
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new IllegalArgumentException("Size must be between 1 and " + MAX_CURSOR_PAGE_SIZE);
+        }
+        long afterId = after == null ? Long.MIN_VALUE : SeekCursor.decode(after, ID_CURSOR).id();
+        List<ReviewSummary> rows = reviewRepository.findSummariesAfter(afterId, PageRequest.of(0, size + 1));
+        return CursorPage.of(rows, size, review -> SeekCursor.encode(ID_CURSOR, review.getId(), null));
     }
 
     @Override
@@ -37,7 +77,9 @@ public class ReviewServiceImpl implements ReviewService {
     }
 
     @Override
+    @Transactional
     public Review updateReview(Review review) {
+        checkRating(review.getRating());
         Review existingReview = reviewRepository.findById(review.getId())
                 .orElseThrow(() -> new ReviewNotFoundException("Review with ID " + review.getId() + " not found"));
 
@@ -46,14 +88,36 @@ public class ReviewServiceImpl implements ReviewService {
             throw new AccessDeniedException("User not authorized to update this review");
         }
 
-        if (review.getUser() == null) {
-            review.setUser(existingReview.getUser());
+        Long previousBookId = existingReview.getBook().getId();
+        Integer previousRating = existingReview.getRating();
+        if (review.getBook() != null) {
+            existingReview.setBook(review.getBook());
         }
-
-        return reviewRepository.save(review);
+        existingReview.setComment(review.getComment());
+        existingReview.setRating(review.getRating());
+
+        // изменения копируются в загруженный отзыв, чтобы сохранение проверило его version
+        Review saved = reviewRepository.save(existingReview);
+        Long bookId = saved.getBook().getId();
+        if (!previousBookId.equals(bookId) || !Objects.equals(previousRating, saved.getRating())) {
+            // строки книг блокируются по возрастанию id, чтобы встречные переносы отзывов не ждали друг друга
+            if (previousBookId <= bookId) {
+                applyRating(previousBookId, previousRating, -1);
+                applyRating(bookId, saved.getRating(), 1);
+            } else {
+                applyRating(bookId, saved.getRating(), 1);
+                applyRating(previousBookId, previousRating, -1);
+            }
+        }
+        reviewsChanged(previousBookId);
+        if (!previousBookId.equals(bookId)) {
+            reviewsChanged(bookId);
+        }
+        return saved;
     }
 
     @Override
+    @Transactional
     public void deleteReview(Long reviewId) {
         Review existingReview = reviewRepository.findById(reviewId)
                 .orElseThrow(() -> new ReviewNotFoundException("Review with ID " + reviewId + " not found"));
@@ -67,6 +131,42 @@ public class ReviewServiceImpl implements ReviewService {
         }
 
         reviewRepository.deleteById(reviewId);
+        applyRating(existingReview.getBook().getId(), existingReview.getRating(), -1);
+        reviewsChanged(existingReview.getBook().getId());
+    }
+
+    @Override
+    public Revision findReviewsRevision(Long bookId) {
+        BookRepository.RevisionView revision = bookRepository.findRevisionById(bookId)
+                .orElseThrow(() -> new BookNotFoundException("Book with ID " + bookId + " not found"));
+        return Revision.of(revision.getVersion(), revision.getUpdatedAt(), revision.getReviewsUpdatedAt());
+    }
+
+    private static void checkRating(Integer rating) {
+        if (rating != null && !Ratings.isValid(rating)) {
+            throw new IllegalArgumentException(
+                    "Rating must be between " + Ratings.MIN + " and " + Ratings.MAX + ": " + rating);
+        }
+    }
+
+    /**
+     * Отзыв без оценки в агрегаты не входит
+     */
+    private void applyRating(Long bookId, Integer rating, int delta) {
+        if (rating != null) {
+            bookRepository.applyRating(bookId, rating, delta);
+            bookSuggestionIndex.refresh(bookId);
+            bookLeaderboard.refresh(bookId);
+            bookFacetIndex.refresh(bookId);
+        }
+    }
+
+    /**
+     * Новая версия для ETag карточки и списка отзывов книги
+     */
+    private void reviewsChanged(Long bookId) {
+        bookRepository.touchReviews(bookId, Instant.now());
+        bookCardCache.evict(bookId);
     }
 
     @Override
@@ -0,0 +1,47 @@
+package ru.liga.book.service.impl;
+
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import ru.liga.book.exception.ImportAlreadyRunningException;
+import ru.liga.book.exception.SimilarityAlreadyRunningException;
+import ru.liga.book.service.SimilarityJobService;
+
+/**
+ * Запуск similarityJob через {@link JobExecutions}, как и импорт. Пока идёт importJob, задание не запускается:
+ * импорт удаляет и перезагружает книги, на которые ссылается book_neighbours.
+ */
+@Service
+public class SimilarityJobServiceImpl implements SimilarityJobService {
+
+    private final JobExecutions jobExecutions;
+
+    private final Job similarityJob;
+
+    private final Job importJob;
+
+    public SimilarityJobServiceImpl(JobExecutions jobExecutions,
+                                    @Qualifier("similarityJob") Job similarityJob,
+                                    @Qualifier("importJob") Job importJob) {
+        this.jobExecutions = jobExecutions;
+        this.similarityJob = similarityJob;
+        this.importJob = importJob;
+    }
+
+    @Override
+    public Long startSimilarity() {
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addLong("time", System.currentTimeMillis())
+                .toJobParameters();
+        return jobExecutions.start(similarityJob, jobParameters, () -> {
+            if (!jobExecutions.findRunning(similarityJob.getName()).isEmpty()) {
+                throw new SimilarityAlreadyRunningException("Similarity job is already running");
+            }
+            if (!jobExecutions.findRunning(importJob.getName()).isEmpty()) {
+                throw new ImportAlreadyRunningException("Import is running, similarity job can start after it");
+            }
+        }).getId();
+    }
+}
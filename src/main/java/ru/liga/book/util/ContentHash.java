@@ -0,0 +1,63 @@
+package ru.liga.book.util;
+
+/**
+ * 64-битный FNV-1a по значениям полей строки. Не зависит от JVM и порядка запуска,
+ * поэтому значение можно хранить в базе и сравнивать между импортами.
+ * <pre>
+ * long hash = ContentHash.SEED;
+ * hash = ContentHash.add(hash, book.getTitle());
+ * ...
+ * ContentHash.finish(hash);
+ * </pre>
+ */
+public final class ContentHash {
+
+    public static final long SEED = 0xcbf29ce484222325L;
+
+    private static final long PRIME = 0x100000001b3L;
+
+    private static final long NULL_MARKER = 0x9e3779b97f4a7c15L;
+
+    private static final int SEPARATOR = 0x1f;
+
+    private ContentHash() {
+    }
+
+    public static long add(long hash, String value) {
+        if (value == null) {
+            return addLong(hash, NULL_MARKER);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * PRIME;
+            hash = (hash ^ (c >>> 8)) * PRIME;
+        }
+        return (hash ^ SEPARATOR) * PRIME;
+    }
+
+    public static long add(long hash, Double value) {
+        return value == null ? addLong(hash, NULL_MARKER) : addLong(hash, Double.doubleToLongBits(value));
+    }
+
+    public static long add(long hash, Integer value) {
+        return value == null ? addLong(hash, NULL_MARKER) : addLong(hash, value);
+    }
+
+    public static long add(long hash, Long value) {
+        return value == null ? addLong(hash, NULL_MARKER) : addLong(hash, value);
+    }
+
+    public static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long addLong(long hash, long value) {
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            hash = (hash ^ ((value >>> shift) & 0xff)) * PRIME;
+        }
+        return (hash ^ SEPARATOR) * PRIME;
+    }
+}
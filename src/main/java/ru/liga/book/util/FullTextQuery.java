@@ -0,0 +1,43 @@
+package ru.liga.book.util;
+
+import java.util.Locale;
+
+/**
+ * Строка поиска пользователя в tsquery PostgreSQL: каждое слово ищется как префикс, слова через И.
+ * В запрос попадают только буквы и цифры, поэтому синтаксис tsquery (& | ! : скобки) из ввода не проходит.
+ */
+public final class FullTextQuery {
+
+    private FullTextQuery() {
+    }
+
+    /**
+     * "Harry Pot" -> "harry:* & pot:*"
+     *
+     * @throws IllegalArgumentException если в строке нет ни одного слова
+     */
+    public static String prefixQuery(String text) {
+        StringBuilder query = new StringBuilder();
+        int i = 0;
+        int length = text == null ? 0 : text.length();
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.codePointAt(i))) {
+                i += Character.charCount(text.codePointAt(i));
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.codePointAt(i))) {
+                i += Character.charCount(text.codePointAt(i));
+            }
+            if (i > start) {
+                if (!query.isEmpty()) {
+                    query.append(" & ");
+                }
+                query.append(text.substring(start, i).toLowerCase(Locale.ROOT)).append(":*");
+            }
+        }
+        if (query.isEmpty()) {
+            throw new IllegalArgumentException("Search query must contain letters or digits");
+        }
+        return query.toString();
+    }
+}
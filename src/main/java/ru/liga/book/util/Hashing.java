@@ -0,0 +1,20 @@
+package ru.liga.book.util;
+
+final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * Финализатор MurmurHash3: последовательные id не должны ложиться в соседние ячейки
+     */
+    static int mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
@@ -0,0 +1,139 @@
+package ru.liga.book.util;
+
+import java.math.BigDecimal;
+
+/**
+ * Нормализация ISBN. ISBN-13 хранится числом (BIGINT): 13 цифр точно помещаются в long,
+ * в отличие от double, где при записи вида 9.78043902348e+12 теряется последняя цифра.
+ * ISBN-10 - строкой из 10 символов (контрольный символ может быть X).
+ */
+public final class Isbn {
+
+    private static final long MIN_ISBN13 = 9_780_000_000_000L;
+    private static final long MAX_ISBN13 = 9_799_999_999_999L;
+    private static final long PREFIX_978 = 978;
+    private static final long PREFIX_SCALE = 10_000_000_000L;
+    private static final int ISBN13_DIGITS = 13;
+
+    private Isbn() {
+    }
+
+    /**
+     * "0-439-02348-3", "043902348X", "439023483" (ведущий ноль потерян при выгрузке числом) -> ISBN-10
+     *
+     * @return null, если это не ISBN-10 с верной контрольной цифрой
+     */
+    public static String normalize10(String text) {
+        if (text == null) {
+            return null;
+        }
+        char[] chars = new char[10];
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            boolean check = c == 'X' || c == 'x';
+            if (length == chars.length || !(c >= '0' && c <= '9' || check)) {
+                return null;
+            }
+            chars[length++] = check ? 'X' : c;
+        }
+        if (length == 0) {
+            return null;
+        }
+        int padding = chars.length - length;
+        System.arraycopy(chars, 0, chars, padding, length);
+        for (int i = 0; i < padding; i++) {
+            chars[i] = '0';
+        }
+        int sum = 0;
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] == 'X' && i != chars.length - 1) {
+                return null;
+            }
+            sum += (10 - i) * (chars[i] == 'X' ? 10 : chars[i] - '0');
+        }
+        return sum % 11 == 0 ? new String(chars) : null;
+    }
+
+    /**
+     * ISBN-13 из любой записи: "978-0-439-02348-1", "9780439023481", "9.780439023481e+12" или ISBN-10.
+     * Число в экспоненциальной записи принимается, только если в нём все 13 значащих цифр.
+     *
+     * @return null, если строка не ISBN или контрольная цифра не сходится
+     */
+    public static Long toIsbn13(String text) {
+        if (text == null) {
+            return null;
+        }
+        String compact = text.replace("-", "").replace(" ", "");
+        if (compact.isEmpty()) {
+            return null;
+        }
+        String isbn10 = normalize10(compact);
+        if (isbn10 != null && compact.length() <= 10) {
+            return fromIsbn10(isbn10);
+        }
+        BigDecimal number;
+        try {
+            number = new BigDecimal(compact);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (number.precision() < ISBN13_DIGITS || number.signum() <= 0 || number.stripTrailingZeros().scale() > 0
+                || number.compareTo(BigDecimal.valueOf(MAX_ISBN13)) > 0) {
+            return null;
+        }
+        long isbn13 = number.longValueExact();
+        return isValid13(isbn13) ? isbn13 : null;
+    }
+
+    public static boolean isValid13(long isbn13) {
+        if (isbn13 < MIN_ISBN13 || isbn13 > MAX_ISBN13) {
+            return false;
+        }
+        return checkDigit13(isbn13 / 10) == isbn13 % 10;
+    }
+
+    /**
+     * @param isbn10 результат {@link #normalize10}
+     */
+    public static long fromIsbn10(String isbn10) {
+        long body = PREFIX_978 * PREFIX_SCALE / 10 + Long.parseLong(isbn10, 0, 9, 10);
+        return body * 10 + checkDigit13(body);
+    }
+
+    /**
+     * @return null для префикса 979: у таких книг нет ISBN-10
+     */
+    public static String toIsbn10(long isbn13) {
+        if (isbn13 / PREFIX_SCALE != PREFIX_978) {
+            return null;
+        }
+        long body = isbn13 / 10 % 1_000_000_000L;
+        int sum = 0;
+        long rest = body;
+        for (int weight = 2; weight <= 10; weight++) {
+            sum += weight * (int) (rest % 10);
+            rest /= 10;
+        }
+        int check = (11 - sum % 11) % 11;
+        return String.format("%09d", body) + (check == 10 ? "X" : String.valueOf(check));
+    }
+
+    /**
+     * @param body первые 12 цифр ISBN-13
+     */
+    private static long checkDigit13(long body) {
+        int sum = 0;
+        long rest = body;
+        for (int i = 0; i < 12; i++) {
+            // с конца: 12-я цифра с весом 3, 11-я с весом 1 и т.д.
+            sum += (i % 2 == 0 ? 3 : 1) * (int) (rest % 10);
+            rest /= 10;
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
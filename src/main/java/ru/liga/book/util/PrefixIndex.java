@@ -0,0 +1,216 @@
+package ru.liga.book.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Неизменяемый индекс префиксного поиска: ключи (строки в UTF-8) лежат отсортированными в одном byte[],
+ * у каждого ключа id и вес. Запрос находит диапазон ключей с префиксом двоичным поиском.
+ * Для «тяжёлых» префиксов (диапазон больше scanThreshold) лучшие по весу позиции посчитаны заранее,
+ * остальные диапазоны просматриваются целиком, поэтому запрос не дороже O(log n + scanThreshold).
+ */
+public final class PrefixIndex {
+
+    private static final int MAX_KEY_CHARS = 64;
+
+    private final byte[] data;
+    private final int[] offsets;
+    private final long[] ids;
+    private final int[] weights;
+    private final int topK;
+    private final int scanThreshold;
+    private final Map<String, int[]> heavyPrefixes = new HashMap<>();
+
+    private PrefixIndex(byte[] data, int[] offsets, long[] ids, int[] weights, int topK, int scanThreshold) {
+        this.data = data;
+        this.offsets = offsets;
+        this.ids = ids;
+        this.weights = weights;
+        this.topK = topK;
+        this.scanThreshold = scanThreshold;
+        precompute(0, ids.length, 0);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Приводит ключ и запрос к одному виду: нижний регистр, одиночные пробелы, не длиннее 64 символов
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return normalized.length() > MAX_KEY_CHARS ? normalized.substring(0, MAX_KEY_CHARS) : normalized;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Ключи, начинающиеся с префикса, по убыванию веса; id не повторяются
+     *
+     * @param limit больше topK, с которым построен индекс, - лучшие позиции ищутся просмотром всего диапазона
+     */
+    public List<Hit> search(String prefix, int limit) {
+        byte[] query = normalize(prefix).getBytes(StandardCharsets.UTF_8);
+        int from = lowerBound(query);
+        int to = upperBound(query, from);
+        if (from >= to) {
+            return List.of();
+        }
+        int[] positions = to - from > scanThreshold && limit <= topK
+                ? heavyPrefixes.get(new String(query, StandardCharsets.ISO_8859_1))
+                : null;
+        if (positions == null) {
+            positions = top(from, to, Math.max(topK, limit));
+        }
+        List<Hit> hits = new ArrayList<>(Math.min(limit, positions.length));
+        for (int i = 0; i < positions.length && hits.size() < limit; i++) {
+            long id = ids[positions[i]];
+            if (hits.stream().noneMatch(hit -> hit.id() == id)) {
+                hits.add(new Hit(id, weights[positions[i]]));
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Заранее считает лучшие позиции для диапазонов больше scanThreshold. Диапазон [from, to) - ключи
+     * с общим префиксом длины depth; ключ, равный префиксу, стоит в диапазоне первым.
+     */
+    private void precompute(int from, int to, int depth) {
+        if (to - from <= scanThreshold) {
+            return;
+        }
+        heavyPrefixes.put(new String(data, offsets[from], depth, StandardCharsets.ISO_8859_1), top(from, to, topK));
+        int i = from;
+        while (i < to && length(i) == depth) {
+            i++;
+        }
+        while (i < to) {
+            byte next = data[offsets[i] + depth];
+            int j = i + 1;
+            while (j < to && data[offsets[j] + depth] == next) {
+                j++;
+            }
+            precompute(i, j, depth + 1);
+            i = j;
+        }
+    }
+
+    private int[] top(int from, int to, int k) {
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k + 1, Comparator.comparingInt(i -> weights[i]));
+        for (int i = from; i < to; i++) {
+            if (heap.size() < k) {
+                heap.add(i);
+            } else if (weights[i] > weights[heap.peek()]) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        int[] positions = new int[heap.size()];
+        for (int i = positions.length - 1; i >= 0; i--) {
+            positions[i] = heap.poll();
+        }
+        return positions;
+    }
+
+    /**
+     * Первый ключ не меньше префикса
+     */
+    private int lowerBound(byte[] prefix) {
+        int low = 0;
+        int high = ids.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Arrays.compareUnsigned(data, offsets[mid], offsets[mid + 1], prefix, 0, prefix.length) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Первый ключ после from, который уже не начинается с префикса
+     */
+    private int upperBound(byte[] prefix, int from) {
+        int low = from;
+        int high = ids.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int end = Math.min(offsets[mid] + prefix.length, offsets[mid + 1]);
+            if (Arrays.compareUnsigned(data, offsets[mid], end, prefix, 0, prefix.length) <= 0
+                    && end - offsets[mid] == prefix.length) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int length(int position) {
+        return offsets[position + 1] - offsets[position];
+    }
+
+    public record Hit(long id, int weight) {
+    }
+
+    public static final class Builder {
+
+        private final List<Entry> entries = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder add(String key, long id, int weight) {
+            String normalized = normalize(key);
+            if (!normalized.isEmpty()) {
+                entries.add(new Entry(normalized.getBytes(StandardCharsets.UTF_8), id, weight));
+            }
+            return this;
+        }
+
+        /**
+         * @param topK          сколько лучших позиций хранить для тяжёлого префикса
+         * @param scanThreshold диапазоны до этого размера просматриваются при запросе
+         */
+        public PrefixIndex build(int topK, int scanThreshold) {
+            entries.sort((a, b) -> Arrays.compareUnsigned(a.key, b.key));
+            int[] offsets = new int[entries.size() + 1];
+            long[] ids = new long[entries.size()];
+            int[] weights = new int[entries.size()];
+            int total = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                offsets[i] = total;
+                total += entries.get(i).key.length;
+            }
+            offsets[entries.size()] = total;
+            byte[] data = new byte[total];
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                System.arraycopy(entry.key, 0, data, offsets[i], entry.key.length);
+                ids[i] = entry.id;
+                weights[i] = entry.weight;
+            }
+            entries.clear();
+            return new PrefixIndex(data, offsets, ids, weights, topK, scanThreshold);
+        }
+    }
+
+    private record Entry(byte[] key, long id, int weight) {
+    }
+}
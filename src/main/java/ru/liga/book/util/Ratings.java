@@ -0,0 +1,47 @@
+package ru.liga.book.util;
+
+import ru.liga.book.model.Book;
+
+/**
+ * Агрегаты оценок книги: число, сумма, среднее и гистограмма 1-5.
+ * Среднее всегда выводится из суммы и числа, чтобы не расходиться с ними.
+ */
+public final class Ratings {
+
+    public static final int MIN = 1;
+
+    public static final int MAX = 5;
+
+    private Ratings() {
+    }
+
+    public static boolean isValid(Integer rating) {
+        return rating != null && rating >= MIN && rating <= MAX;
+    }
+
+    public static double average(long sum, long count) {
+        return count == 0 ? 0.0 : (double) sum / count;
+    }
+
+    /**
+     * Число, сумма и среднее книги по её гистограмме; пустые корзины считаются нулём
+     */
+    public static void fromHistogram(Book book) {
+        book.setRatings1(orZero(book.getRatings1()));
+        book.setRatings2(orZero(book.getRatings2()));
+        book.setRatings3(orZero(book.getRatings3()));
+        book.setRatings4(orZero(book.getRatings4()));
+        book.setRatings5(orZero(book.getRatings5()));
+        long count = (long) book.getRatings1() + book.getRatings2() + book.getRatings3()
+                + book.getRatings4() + book.getRatings5();
+        long sum = book.getRatings1() + 2L * book.getRatings2() + 3L * book.getRatings3()
+                + 4L * book.getRatings4() + 5L * book.getRatings5();
+        book.setRatingCount(Math.toIntExact(count));
+        book.setRatingSum(sum);
+        book.setRatingAvg(average(sum, count));
+    }
+
+    private static int orZero(Integer value) {
+        return value == null ? 0 : value;
+    }
+}
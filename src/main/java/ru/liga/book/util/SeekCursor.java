@@ -0,0 +1,39 @@
+package ru.liga.book.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор keyset-пагинации: вид сортировки, id и значение ключа сортировки последней строки.
+ * value == null - строка из хвоста с пустым ключом сортировки (NULLS LAST).
+ */
+public record SeekCursor(long id, String value) {
+
+    private static final char SEPARATOR = '\u001f';
+
+    public static String encode(String sort, long id, String value) {
+        String raw = sort + SEPARATOR + id + (value == null ? "" : SEPARATOR + value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException если курсор повреждён или выдан для другой сортировки
+     */
+    public static SeekCursor decode(String cursor, String sort) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int idStart = raw.indexOf(SEPARATOR);
+            if (idStart < 0 || !raw.substring(0, idStart).equals(sort)) {
+                throw new IllegalArgumentException("Cursor does not belong to sort '" + sort + "'");
+            }
+            int valueStart = raw.indexOf(SEPARATOR, idStart + 1);
+            if (valueStart < 0) {
+                return new SeekCursor(Long.parseLong(raw.substring(idStart + 1)), null);
+            }
+            return new SeekCursor(Long.parseLong(raw.substring(idStart + 1, valueStart)),
+                    raw.substring(valueStart + 1));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
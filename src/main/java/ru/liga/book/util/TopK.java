@@ -0,0 +1,102 @@
+package ru.liga.book.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Не больше capacity элементов с наибольшим score (при равенстве - с меньшим id), элемент можно
+ * переоценить или убрать по id. Вытесненные элементы забываются, поэтому после того, как элемент топа
+ * опустился или удалён, его место может принадлежать уже забытому: достоверна только часть топа
+ * выше лучшего из вытесненных ({@link #top}). Не потокобезопасен.
+ */
+public final class TopK<T> {
+
+    private static final Comparator<Entry<?>> ORDER = Comparator.<Entry<?>>comparingDouble(Entry::score)
+            .reversed()
+            .thenComparingLong(Entry::id);
+
+    private final int capacity;
+
+    private final TreeSet<Entry<T>> entries = new TreeSet<>(ORDER);
+
+    private final Map<Long, Entry<T>> byId = new HashMap<>();
+
+    /**
+     * Лучший из вытесненных или не принятых элементов; всё, что ниже, может быть неполным
+     */
+    private Entry<T> bestDropped;
+
+    public TopK(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Добавляет элемент или обновляет его score
+     */
+    public void offer(long id, double score, T value) {
+        remove(id);
+        Entry<T> entry = new Entry<>(id, score, value);
+        if (entries.size() == capacity) {
+            Entry<T> last = entries.last();
+            if (ORDER.compare(entry, last) > 0) {
+                drop(entry);
+                return;
+            }
+            entries.pollLast();
+            byId.remove(last.id());
+            drop(last);
+        }
+        entries.add(entry);
+        byId.put(id, entry);
+    }
+
+    /**
+     * @return false, если элемента в топе не было
+     */
+    public boolean remove(long id) {
+        Entry<T> entry = byId.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        entries.remove(entry);
+        return true;
+    }
+
+    /**
+     * До limit достоверных элементов по убыванию score
+     */
+    public List<T> top(int limit) {
+        List<T> top = new ArrayList<>(Math.min(limit, entries.size()));
+        for (Entry<T> entry : entries) {
+            if (top.size() == limit || bestDropped != null && ORDER.compare(entry, bestDropped) > 0) {
+                break;
+            }
+            top.add(entry.value());
+        }
+        return top;
+    }
+
+    /**
+     * Достоверных элементов меньше limit, хотя подходящие могли быть вытеснены: топ нужно построить заново
+     */
+    public boolean isIncomplete(int limit) {
+        return bestDropped != null && top(limit).size() < limit;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void drop(Entry<T> entry) {
+        if (bestDropped == null || ORDER.compare(entry, bestDropped) < 0) {
+            bestDropped = entry;
+        }
+    }
+
+    private record Entry<T>(long id, double score, T value) {
+    }
+}
@@ -0,0 +1,199 @@
+package ru.liga.book.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.FlatFileParseException;
+import ru.liga.book.model.BookCsv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedBookCsvReaderTest {
+
+    private static final String HEADER = "id,book_id,best_book_id,work_id,books_count,isbn,isbn13,authors,"
+            + "original_publication_year,original_title,title,language_code,average_rating,ratings_count,"
+            + "work_ratings_count,work_text_reviews_count,ratings_1,ratings_2,ratings_3,ratings_4,ratings_5,"
+            + "image_url,small_image_url";
+
+    private static final int BOOKS = 500;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void parsesQuotedFieldsAndCrlf() throws Exception {
+        Path file = write(HEADER + "\r\n"
+                + "1,2767052,2767052,2792775,272,439023483,9.78043902348e+12,\"Suzanne Collins, \"\"Nick\"\"\","
+                + "2008.0,The Hunger Games,\"The Hunger Games\r\n(Book 1)\",eng,4.34,4780653,4942365,155254,"
+                + "66715,127936,560092,1481305,2706317,https://i/1.jpg, https://s/1.jpg \r\n"
+                + "2,3,3,4,5,null,,Plain Author,,,Plain,,,,,,1,2,3,4,5,,\n");
+        List<BookCsv> books = readAll(file, 1 << 20);
+        assertThat(books).hasSize(2);
+
+        BookCsv first = books.get(0);
+        assertThat(first.getId()).isEqualTo(1);
+        assertThat(first.getBookId()).isEqualTo(2767052L);
+        assertThat(first.getIsbn()).isEqualTo("439023483");
+        assertThat(first.getIsbn13()).isEqualTo("9.78043902348e+12");
+        assertThat(first.getAuthors()).isEqualTo("Suzanne Collins, \"Nick\"");
+        assertThat(first.getOriginalPublicationYear()).isEqualTo(2008.0);
+        assertThat(first.getTitle()).isEqualTo("The Hunger Games\r\n(Book 1)");
+        assertThat(first.getAverageRating()).isEqualTo(4.34);
+        assertThat(first.getRatings5()).isEqualTo(2706317);
+        assertThat(first.getSmallImageUrl()).isEqualTo("https://s/1.jpg");
+
+        BookCsv second = books.get(1);
+        assertThat(second.getIsbn()).isEqualTo("null");
+        assertThat(second.getIsbn13()).isEmpty();
+        assertThat(second.getOriginalPublicationYear()).isNull();
+        assertThat(second.getRatingsCount()).isNull();
+        assertThat(second.getSmallImageUrl()).isEmpty();
+    }
+
+    @Test
+    void lastRecordWithoutNewline() throws Exception {
+        Path file = write(HEADER + "\n" + record(7) + "\n" + record(8));
+        List<BookCsv> books = readAll(file, 1 << 20);
+        assertThat(books).extracting(BookCsv::getId).containsExactly(7, 8);
+        assertThat(books.get(1).getSmallImageUrl()).isEqualTo("s/8.jpg");
+    }
+
+    /**
+     * Записи, разрезанные границей окна в любом месте (в том числе внутри кавычек и между \r и \n),
+     * читаются так же, как из одного окна
+     */
+    @Test
+    void windowBoundariesDoNotChangeRecords() throws Exception {
+        StringBuilder csv = new StringBuilder(HEADER).append("\r\n");
+        for (int i = 0; i < BOOKS; i++) {
+            csv.append(record(i)).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        Path file = write(csv.toString());
+        List<BookCsv> expected = readAll(file, 1 << 20);
+        assertThat(expected).hasSize(BOOKS);
+        for (long windowSize : new long[]{HEADER.length() + 2, 300, 333, 401, 512, 1000, 4096}) {
+            assertThat(readAll(file, windowSize)).as("window %d", windowSize)
+                    .usingRecursiveFieldByFieldElementComparator()
+                    .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void restartsFromItemCount() throws Exception {
+        StringBuilder csv = new StringBuilder(HEADER).append("\n");
+        for (int i = 0; i < 20; i++) {
+            csv.append(record(i)).append("\n");
+        }
+        Path file = write(csv.toString());
+        MappedBookCsvReader reader = new MappedBookCsvReader(file, 300);
+        reader.setCurrentItemCount(12);
+        reader.setMaxItemCount(15);
+        reader.open(new ExecutionContext());
+        try {
+            assertThat(reader.read().getId()).isEqualTo(12);
+            assertThat(reader.read().getId()).isEqualTo(13);
+            assertThat(reader.read().getId()).isEqualTo(14);
+            assertThat(reader.read()).isNull();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Диапазоны партиций начинаются с записей (не внутри поля в кавычках) и вместе дают весь файл ровно один раз
+     */
+    @Test
+    void byteRangesSplitFileIntoRecords() throws Exception {
+        StringBuilder csv = new StringBuilder(HEADER).append("\r\n");
+        for (int i = 0; i < BOOKS; i++) {
+            csv.append(record(i)).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        Path file = write(csv.toString());
+        List<BookCsv> expected = readAll(file, 1 << 20);
+        for (int parts : new int[]{1, 2, 7, 64, BOOKS * 2}) {
+            long[] boundaries = CsvFiles.recordBoundaries(file, parts);
+            assertThat(boundaries).as("parts %d", parts).isSorted().endsWith(Files.size(file));
+            List<BookCsv> books = new ArrayList<>();
+            for (int i = 0; i + 1 < boundaries.length; i++) {
+                books.addAll(read(new MappedBookCsvReader(file, boundaries[i], boundaries[i + 1], 300)));
+            }
+            assertThat(books).as("parts %d", parts)
+                    .usingRecursiveFieldByFieldElementComparator()
+                    .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void fileRangeResourceReadsOnlyItsRange() throws Exception {
+        Path file = write("header\nfirst\nsecond\n");
+        FileRangeResource range = new FileRangeResource(file, 7, 13);
+        try (InputStream in = range.getInputStream()) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("first\n");
+        }
+        assertThat(range.contentLength()).isEqualTo(6);
+    }
+
+    @Test
+    void reportsMalformedRecords() throws Exception {
+        Path fields = write(HEADER + "\n1,2,3\n");
+        assertThatThrownBy(() -> readAll(fields, 1 << 20))
+                .isInstanceOf(FlatFileParseException.class)
+                .hasMessageContaining("Incorrect number of fields");
+
+        Path number = write(HEADER + "\n" + record(1).replaceFirst("^1,", "x,") + "\n");
+        assertThatThrownBy(() -> readAll(number, 1 << 20))
+                .isInstanceOf(FlatFileParseException.class)
+                .hasMessageContaining("column 0");
+
+        Path quote = write(HEADER + "\n1,\"unterminated\n");
+        assertThatThrownBy(() -> readAll(quote, 1 << 20))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Unterminated");
+    }
+
+    /**
+     * Кавычки, "" и перевод строки внутри поля, пустые и null-значения, экспоненциальная запись чисел
+     */
+    private static String record(int i) {
+        String authors = i % 4 == 0 ? "\"Author " + i + ", \"\"Co\"\" Author\"" : "Author " + i;
+        String title = i % 5 == 0 ? "\"Title " + i + "\r\nsecond line\"" : "\"Title, " + i + "\"";
+        String isbn13 = i % 6 == 0 ? "" : "9.78043902348" + (i % 10) + "e+12";
+        String year = i % 7 == 0 ? "" : (1900 + i % 100) + ".0";
+        return i + "," + (1000L + i) + "," + i + "," + i + "," + (i % 9) + ",43902348" + (i % 10) + ","
+                + isbn13 + "," + authors + "," + year + ",Original " + i + "," + title + ","
+                + (i % 2 == 0 ? "eng" : "") + "," + (3 + i % 200 / 100.0) + "," + i * 3 + "," + i * 3 + ","
+                + (i % 8 == 0 ? "null" : String.valueOf(i)) + ",1,2,3,4," + i + ",i/" + i + ".jpg,s/" + i + ".jpg";
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = Files.createTempFile(dir, "books", ".csv");
+        return Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+
+    private static List<BookCsv> readAll(Path file, long windowSize) throws Exception {
+        return read(new MappedBookCsvReader(file, windowSize));
+    }
+
+    private static List<BookCsv> read(MappedBookCsvReader reader) throws Exception {
+        reader.open(new ExecutionContext());
+        try {
+            List<BookCsv> books = new ArrayList<>();
+            BookCsv book;
+            while ((book = reader.read()) != null) {
+                books.add(book);
+            }
+            return books;
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package ru.liga.book.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.liga.book.FinalApplication;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Контекст приложения для сквозных бенчмарков: без импорта при старте, без логирования SQL,
+ * на случайном порту. База - из DATABASE_URL (по умолчанию локальный Postgres из docker-compose).
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext run(Map<String, Object> overrides, Class<?>... extraSources) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.file.import-on-startup", false);
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("server.port", 0);
+        properties.put("decorator.datasource.datasource-proxy.query.enable-logging", false);
+        if (System.getenv("SPRING_SECURITY_JWT_SECRET_KEY") == null) {
+            byte[] key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            properties.put("application.security.jwt.secret-key", Base64.getEncoder().encodeToString(key));
+        }
+        properties.putAll(overrides);
+
+        Class<?>[] sources = new Class<?>[extraSources.length + 1];
+        sources[0] = FinalApplication.class;
+        System.arraycopy(extraSources, 0, sources, 1, extraSources.length);
+        return new SpringApplicationBuilder(sources).properties(properties).run();
+    }
+}
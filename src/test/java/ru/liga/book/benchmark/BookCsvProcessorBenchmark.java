@@ -0,0 +1,135 @@
+package ru.liga.book.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.util.StringUtils;
+import ru.liga.book.batch.BookCsvProcessor;
+import ru.liga.book.batch.MappedBookCsvReader;
+import ru.liga.book.model.Book;
+import ru.liga.book.model.BookCsv;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Прежний processor() (Optional + String.valueOf + повторный parseDouble) против {@link BookCsvProcessor}.
+ * Аллокации видно с профилировщиком GC:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=ru.liga.book.benchmark.BookCsvProcessorBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BookCsvProcessorBenchmark {
+
+    @Param("data/work_book_denormalized.csv")
+    private String file;
+
+    private List<BookCsv> rows;
+
+    private BookCsvProcessor processor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        rows = new ArrayList<>();
+        MappedBookCsvReader reader = new MappedBookCsvReader(Path.of(file));
+        reader.open(new ExecutionContext());
+        BookCsv row;
+        while ((row = reader.read()) != null) {
+            rows.add(row);
+        }
+        reader.close();
+        processor = new BookCsvProcessor();
+    }
+
+    @Benchmark
+    public void legacyProcessor(Blackhole blackhole) {
+        for (BookCsv row : rows) {
+            blackhole.consume(legacyProcess(row));
+        }
+    }
+
+    @Benchmark
+    public void bookCsvProcessor(Blackhole blackhole) {
+        for (BookCsv row : rows) {
+            blackhole.consume(processor.process(row));
+        }
+    }
+
+    private static Book legacyProcess(BookCsv bookCsv) {
+        long bookId = bookCsv.getBookId();
+
+        Optional<String> isbn = Optional.ofNullable(bookCsv.getIsbn()).filter(StringUtils::hasText);
+        Optional<Double> isbn13 = parseDoubleOrZero(bookCsv.getIsbn13());
+        Optional<String> name = Optional.ofNullable(bookCsv.getAuthors()).filter(StringUtils::hasText);
+        Optional<Double> originalPublicationYear = parseDoubleOrZero(String.valueOf(bookCsv
+                .getOriginalPublicationYear()));
+        Optional<String> originalTitle = Optional.ofNullable(bookCsv.getOriginalTitle())
+                .filter(StringUtils::hasText);
+        Optional<String> title = Optional.ofNullable(bookCsv.getTitle()).filter(StringUtils::hasText);
+        Optional<String> langCode = Optional.ofNullable(bookCsv.getLanguageCode()).filter(StringUtils::hasText);
+        Optional<String> imageUrl = Optional.ofNullable(bookCsv.getImageUrl()).filter(StringUtils::hasText);
+        Optional<String> smallImageUrl = Optional.ofNullable(bookCsv.getSmallImageUrl())
+                .filter(StringUtils::hasText);
+        Optional<Integer> ratingCount = Optional.ofNullable(bookCsv.getRatingsCount());
+        Optional<Double> ratingAvg = parseDoubleOrZero(String.valueOf(bookCsv.getAverageRating()));
+
+        return Book.builder()
+                .id(bookId)
+                .isbn(isbn.orElse(null))
+                .isbn13(isbn13.orElse(0.0).longValue())
+                .name(name.orElse(null))
+                .originalPublicationYear(originalPublicationYear.orElse(0.0))
+                .originalTitle(originalTitle.orElse(null))
+                .title(title.orElse(null))
+                .langCode(langCode.orElse(null))
+                .imageUrl(imageUrl.orElse(null))
+                .smallImageUrl(smallImageUrl.orElse(null))
+                .ratingCount(ratingCount.orElse(0))
+                .ratingAvg(ratingAvg.orElse(0.0))
+                .build();
+    }
+
+    private static Optional<Double> parseDoubleOrZero(String stringValue) {
+        try {
+            return Optional.ofNullable(stringValue)
+                    .filter(str -> !str.trim().equalsIgnoreCase("null") && StringUtils.hasText(str))
+                    .map(Double::parseDouble);
+        } catch (NumberFormatException e) {
+            return Optional.of(0.0);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder options = new OptionsBuilder();
+        options.include(BookCsvProcessorBenchmark.class.getSimpleName());
+        options.addProfiler("gc");
+        String file = System.getProperty("benchmark.file");
+        if (file != null) {
+            options.param("file", file);
+        }
+        new Runner(options.build()).run();
+    }
+}
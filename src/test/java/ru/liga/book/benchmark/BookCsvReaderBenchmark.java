@@ -0,0 +1,114 @@
+package ru.liga.book.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.beans.propertyeditors.CustomNumberEditor;
+import org.springframework.core.io.FileSystemResource;
+import ru.liga.book.batch.MappedBookCsvReader;
+import ru.liga.book.model.BookCsv;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение FlatFileItemReader + BeanWrapperFieldSetMapper (как в bookReader()) с MappedBookCsvReader.
+ * Запуск из корня проекта:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=ru.liga.book.benchmark.BookCsvReaderBenchmark
+ * </pre>
+ * Файл задаётся параметром {@code file} (-Dbenchmark.file=...), по умолчанию - data/work_book_denormalized.csv.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BookCsvReaderBenchmark {
+
+    @Param("data/work_book_denormalized.csv")
+    private String file;
+
+    @Benchmark
+    public int flatFileItemReader(Blackhole blackhole) throws Exception {
+        return readAll(flatFileReader(), blackhole);
+    }
+
+    @Benchmark
+    public int mappedReader(Blackhole blackhole) throws Exception {
+        return readAll(new MappedBookCsvReader(Path.of(file)), blackhole);
+    }
+
+    private static int readAll(AbstractItemCountingItemStreamItemReader<BookCsv> reader, Blackhole blackhole)
+            throws Exception {
+        reader.open(new ExecutionContext());
+        try {
+            int count = 0;
+            BookCsv book;
+            while ((book = reader.read()) != null) {
+                blackhole.consume(book);
+                count++;
+            }
+            return count;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private FlatFileItemReader<BookCsv> flatFileReader() {
+        BeanWrapperFieldSetMapper<BookCsv> fieldSetMapper = new BeanWrapperFieldSetMapper<>();
+        fieldSetMapper.setTargetType(BookCsv.class);
+        fieldSetMapper.setCustomEditors(Collections.singletonMap(Double.class,
+                new CustomNumberEditor(Double.class, true) {
+                    @Override
+                    public void setAsText(String text) {
+                        if ("null".equalsIgnoreCase(text)) {
+                            setValue(null);
+                        } else {
+                            super.setAsText(text);
+                        }
+                    }
+                }));
+        return new FlatFileItemReaderBuilder<BookCsv>()
+                .name("BookItemReader")
+                .resource(new FileSystemResource(file))
+                .delimited()
+                .names("id", "book_id", "best_book_id", "work_id", "books_count",
+                        "isbn", "isbn13", "authors", "original_publication_year",
+                        "original_title", "title", "language_code", "average_rating",
+                        "ratings_count", "work_ratings_count", "work_text_reviews_count",
+                        "ratings_1", "ratings_2", "ratings_3", "ratings_4", "ratings_5",
+                        "image_url", "small_image_url")
+                .linesToSkip(1)
+                .fieldSetMapper(fieldSetMapper)
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder options = new OptionsBuilder();
+        options.include(BookCsvReaderBenchmark.class.getSimpleName());
+        String file = System.getProperty("benchmark.file");
+        if (file != null) {
+            options.param("file", file);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,113 @@
+package ru.liga.book.benchmark;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import ru.liga.book.dto.BookFilter;
+import ru.liga.book.model.Book;
+import ru.liga.book.service.BookService;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Задержка и объём аллокаций на запрос страницы книг: проекция BookSummary (GET /api/books)
+ * против прежнего запроса с fetch join отзывов, который Hibernate пагинирует в памяти.
+ * Каталог должен быть уже загружен (ImportDatasetGenerator + importJob), схема не пересоздаётся.
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=ru.liga.book.benchmark.BookListingBenchmark -Dbenchmark.pages=0,500
+ * </pre>
+ * Результаты дописываются в target/book-listing-benchmark.csv.
+ */
+public class BookListingBenchmark {
+
+    private static final Path RESULTS = Path.of("target", "book-listing-benchmark.csv");
+
+    private static final String RESULTS_HEADER = "timestamp,query,page,size,p50_ms,p99_ms,allocated_mb";
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        int size = Integer.getInteger("benchmark.size", 20);
+        int iterations = Integer.getInteger("benchmark.iterations", 100);
+        int[] pages = Arrays.stream(System.getProperty("benchmark.pages", "0,500").split(","))
+                .mapToInt(page -> Integer.parseInt(page.trim()))
+                .toArray();
+
+        try (ConfigurableApplicationContext context = BenchmarkContext.run(
+                Map.of("spring.liquibase.drop-first", false))) {
+            BookService bookService = context.getBean(BookService.class);
+            EntityManagerFactory entityManagerFactory = context.getBean(EntityManagerFactory.class);
+
+            System.out.printf(Locale.ROOT, "%-12s %6s %10s %10s %14s%n", "query", "page", "p50 ms", "p99 ms",
+                    "allocated MB");
+            for (int page : pages) {
+                measure("summary", page, size, iterations,
+                        () -> bookService.findAllBooks(new BookFilter(), PageRequest.of(page, size)));
+                measure("entityGraph", page, size, iterations,
+                        () -> fetchJoinPage(entityManagerFactory, page, size));
+            }
+        }
+    }
+
+    /**
+     * Прежний findAll(Pageable) с @EntityGraph(reviews): выборка всех книг с отзывами и отбор страницы в памяти
+     */
+    private static List<Book> fetchJoinPage(EntityManagerFactory entityManagerFactory, int page, int size) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.createQuery("SELECT count(b) FROM Book b", Long.class).getSingleResult();
+            return entityManager.createQuery("SELECT b FROM Book b LEFT JOIN FETCH b.reviews ORDER BY b.id", Book.class)
+                    .setFirstResult(page * size)
+                    .setMaxResults(size)
+                    .getResultList();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private static void measure(String query, int page, int size, int iterations, Runnable call) throws IOException {
+        int warmup = Math.max(iterations / 10, 3);
+        for (int i = 0; i < warmup; i++) {
+            call.run();
+        }
+        long[] nanos = new long[iterations];
+        long allocated = 0;
+        for (int i = 0; i < iterations; i++) {
+            long bytesBefore = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            call.run();
+            nanos[i] = System.nanoTime() - start;
+            allocated += THREADS.getCurrentThreadAllocatedBytes() - bytesBefore;
+        }
+        Arrays.sort(nanos);
+        double p50 = nanos[iterations / 2] / 1e6;
+        double p99 = nanos[Math.min(iterations - 1, (int) Math.ceil(iterations * 0.99) - 1)] / 1e6;
+        double allocatedMb = allocated / (double) iterations / (1024 * 1024);
+        System.out.printf(Locale.ROOT, "%-12s %6d %10.2f %10.2f %14.2f%n", query, page, p50, p99, allocatedMb);
+
+        boolean newFile = !Files.exists(RESULTS);
+        Files.createDirectories(RESULTS.getParent());
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(RESULTS, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            if (newFile) {
+                out.println(RESULTS_HEADER);
+            }
+            out.printf(Locale.ROOT, "%s,%s,%d,%d,%.3f,%.3f,%.3f%n", LocalDateTime.now(), query, page, size,
+                    p50, p99, allocatedMb);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package ru.liga.book.benchmark;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongFunction;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Выигрыш условного GET: задержка и размер ответа GET /api/books/{id} и /api/reviews/book/{bookId}
+ * без валидаторов (200 с JSON) и с If-None-Match из предыдущего ответа (304 без тела).
+ * Запросы идут через MockMvc (весь стек Spring MVC и Jackson, без сети и фильтров безопасности).
+ * Каталог должен быть уже загружен, схема не пересоздаётся.
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=ru.liga.book.benchmark.ConditionalGetBenchmark -Dbenchmark.books=200
+ * </pre>
+ * -Dbenchmark.cache=none отключает кеш карточек. Результаты дописываются в target/conditional-get-benchmark.csv.
+ */
+public class ConditionalGetBenchmark {
+
+    private static final Path RESULTS = Path.of("target", "conditional-get-benchmark.csv");
+
+    private static final String RESULTS_HEADER = "timestamp,resource,request,status,p50_ms,p99_ms,avg_bytes";
+
+    public static void main(String[] args) throws Exception {
+        int books = Integer.getInteger("benchmark.books", 200);
+        int rounds = Integer.getInteger("benchmark.rounds", 5);
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("spring.liquibase.drop-first", false);
+        overrides.put("spring.cache.type", System.getProperty("benchmark.cache", "caffeine"));
+
+        try (ConfigurableApplicationContext context = BenchmarkContext.run(overrides)) {
+            MockMvc mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+            SecurityContextHolder.getContext().setAuthentication(
+                    new TestingAuthenticationToken("benchmark", null, "ROLE_USER"));
+            List<Long> ids = context.getBean(JdbcTemplate.class).queryForList(
+                    "SELECT id FROM books ORDER BY random() LIMIT ?", Long.class, books);
+
+            System.out.printf(Locale.ROOT, "%-8s %-12s %6s %10s %10s %12s%n", "resource", "request", "status",
+                    "p50 ms", "p99 ms", "avg bytes");
+            measure(mockMvc, "card", ids, rounds, id -> get("/api/books/{id}", id));
+            measure(mockMvc, "reviews", ids, rounds, id -> get("/api/reviews/book/{bookId}", id));
+        }
+    }
+
+    private static void measure(MockMvc mockMvc, String resource, List<Long> ids, int rounds,
+                                LongFunction<MockHttpServletRequestBuilder> request) throws Exception {
+        Map<Long, String> etags = new HashMap<>();
+        for (Long id : ids) {
+            etags.put(id, mockMvc.perform(request.apply(id)).andReturn().getResponse().getHeader(HttpHeaders.ETAG));
+        }
+        run(mockMvc, resource, "full", ids, rounds, request::apply);
+        run(mockMvc, resource, "if-none-match", ids, rounds,
+                id -> request.apply(id).header(HttpHeaders.IF_NONE_MATCH, etags.get(id)));
+    }
+
+    private static void run(MockMvc mockMvc, String resource, String name, List<Long> ids, int rounds,
+                            LongFunction<MockHttpServletRequestBuilder> request) throws Exception {
+        for (Long id : ids) {
+            mockMvc.perform(request.apply(id));
+        }
+        long[] nanos = new long[ids.size() * rounds];
+        long bytes = 0;
+        int status = 0;
+        int i = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (Long id : ids) {
+                long start = System.nanoTime();
+                MockHttpServletResponse response = mockMvc.perform(request.apply(id)).andReturn().getResponse();
+                nanos[i++] = System.nanoTime() - start;
+                bytes += response.getContentAsByteArray().length;
+                status = response.getStatus();
+            }
+        }
+        Arrays.sort(nanos);
+        double p50 = nanos[nanos.length / 2] / 1e6;
+        double p99 = nanos[Math.min(nanos.length - 1, (int) Math.ceil(nanos.length * 0.99) - 1)] / 1e6;
+        double avgBytes = bytes / (double) nanos.length;
+        System.out.printf(Locale.ROOT, "%-8s %-12s %6d %10.3f %10.3f %12.0f%n", resource, name, status, p50, p99,
+                avgBytes);
+        write(resource, name, status, p50, p99, avgBytes);
+    }
+
+    private static void write(String resource, String name, int status, double p50, double p99, double avgBytes)
+            throws IOException {
+        boolean newFile = !Files.exists(RESULTS);
+        Files.createDirectories(RESULTS.getParent());
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(RESULTS, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            if (newFile) {
+                out.println(RESULTS_HEADER);
+            }
+            out.printf(Locale.ROOT, "%s,%s,%s,%d,%.3f,%.3f,%.0f%n", LocalDateTime.now(), resource, name, status,
+                    p50, p99, avgBytes);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package ru.liga.book.benchmark;
+
+import ru.liga.book.util.Isbn;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Генератор синтетических входных файлов importJob: books.csv в формате bookReader()
+ * (23 колонки, как work_book_denormalized.csv) и ratings.csv в формате reviewReader() (book_id,user_id,rating).
+ * <p>
+ * Id книг идут подряд с 1 и совпадают в колонках id и book_id, поэтому все оценки ссылаются на
+ * существующие книги. Популярность книг неравномерная (ранние id получают больше оценок),
+ * пользователь ставит 1-200 оценок разным книгам. Часть значений намеренно пустая или "null",
+ * как в исходном файле. Одинаковый seed даёт одинаковые файлы.
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=ru.liga.book.benchmark.ImportDatasetGenerator -Dexec.args="target/dataset 1M 10M"
+ * </pre>
+ * Размеры: число или с суффиксом k/M (100k, 1M, 10M, 100M).
+ */
+public class ImportDatasetGenerator {
+
+    public static final String BOOKS_FILE = "books.csv";
+    public static final String RATINGS_FILE = "ratings.csv";
+
+    private static final String BOOK_HEADER = "id,book_id,best_book_id,work_id,books_count,isbn,isbn13,authors,"
+            + "original_publication_year,original_title,title,language_code,average_rating,ratings_count,"
+            + "work_ratings_count,work_text_reviews_count,ratings_1,ratings_2,ratings_3,ratings_4,ratings_5,"
+            + "image_url,small_image_url";
+
+    private static final String[] WORDS = {"Night", "Garden", "Stone", "River", "Secret", "House", "War", "Game",
+            "Shadow", "Queen", "Fire", "Winter", "City", "Dream", "Sea", "Glass", "Song", "Road", "Empire", "Light"};
+
+    private static final String[] NAMES = {"Anna", "John", "Maria", "Peter", "Olga", "James", "Elena", "Mark",
+            "Sofia", "Ivan", "Laura", "Daniel"};
+
+    private static final String[] SURNAMES = {"Collins", "Rowling", "Tolstoy", "King", "Austen", "Orwell",
+            "Petrova", "Smith", "Brontë", "Grandpré", "Ivanov", "Martin"};
+
+    private static final String[] LANGUAGES = {"eng", "eng", "eng", "en-US", "en-GB", "rus", "spa", "fre", "ger"};
+
+    private static final int MAX_RATINGS_PER_USER = 200;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final SplittableRandom random;
+
+    public ImportDatasetGenerator(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: ImportDatasetGenerator <outputDir> <books> <ratings> [seed]");
+            System.exit(1);
+        }
+        Path dir = Path.of(args[0]);
+        long books = parseSize(args[1]);
+        long ratings = parseSize(args[2]);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+        Files.createDirectories(dir);
+        ImportDatasetGenerator generator = new ImportDatasetGenerator(seed);
+        long start = System.nanoTime();
+        generator.writeBooks(dir.resolve(BOOKS_FILE), books);
+        long users = generator.writeRatings(dir.resolve(RATINGS_FILE), books, ratings);
+        System.out.printf(Locale.ROOT, "%d books, %d ratings from %d users written to %s in %.1f s%n",
+                books, ratings, users, dir.toAbsolutePath(), (System.nanoTime() - start) / 1e9);
+    }
+
+    static long parseSize(String size) {
+        String value = size.trim();
+        long multiplier = 1;
+        char suffix = Character.toLowerCase(value.charAt(value.length() - 1));
+        if (suffix == 'k') {
+            multiplier = 1_000;
+        } else if (suffix == 'm') {
+            multiplier = 1_000_000;
+        }
+        if (multiplier > 1) {
+            value = value.substring(0, value.length() - 1);
+        }
+        return Long.parseLong(value) * multiplier;
+    }
+
+    public void writeBooks(Path path, long count) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write(BOOK_HEADER);
+            out.write("\r\n");
+            StringBuilder line = new StringBuilder(512);
+            for (long id = 1; id <= count; id++) {
+                line.setLength(0);
+                appendBook(line, id);
+                line.append("\r\n");
+                out.append(line);
+            }
+        }
+    }
+
+    private void appendBook(StringBuilder line, long id) {
+        long isbn13 = Isbn.fromIsbn10(String.format("%09d", random.nextLong(1_000_000_000L)));
+        // как в исходной выгрузке: ISBN-10 без ведущих нулей, ISBN-13 в экспоненциальной записи без последней цифры
+        String isbn = Isbn.toIsbn10(isbn13).replaceFirst("^0+", "");
+        String title = title();
+        int[] stars = new int[5];
+        long ratingsCount = 0;
+        long weighted = 0;
+        for (int i = 0; i < stars.length; i++) {
+            stars[i] = random.nextInt(1 + 1000 * (i + 1));
+            ratingsCount += stars[i];
+            weighted += (long) stars[i] * (i + 1);
+        }
+
+        line.append(id).append(',').append(id).append(',').append(id).append(',')
+                .append(random.nextLong(10_000_000L)).append(',').append(1 + random.nextInt(300)).append(',');
+        if (random.nextInt(20) != 0) {
+            line.append(isbn);
+        }
+        line.append(',');
+        if (random.nextInt(20) == 0) {
+            line.append("null");
+        } else {
+            line.append(String.format(Locale.ROOT, "%.11e", (double) isbn13));
+        }
+        line.append(',');
+        quoted(line, author() + (random.nextInt(5) == 0 ? ", " + author() : ""));
+        line.append(',');
+        if (random.nextInt(50) == 0) {
+            line.append("null");
+        } else {
+            line.append(1800 + random.nextInt(218)).append(".0");
+        }
+        line.append(',').append(random.nextInt(10) == 0 ? "" : title).append(',');
+        quoted(line, title + " (" + WORDS[random.nextInt(WORDS.length)] + ", #" + (1 + random.nextInt(9)) + ")");
+        line.append(',').append(random.nextInt(8) == 0 ? "" : LANGUAGES[random.nextInt(LANGUAGES.length)])
+                .append(',').append(String.format(Locale.ROOT, "%.2f", ratingsCount == 0 ? 0.0
+                        : (double) weighted / ratingsCount))
+                .append(',').append(ratingsCount)
+                .append(',').append(ratingsCount + random.nextInt(1000))
+                .append(',').append(random.nextInt(5000));
+        for (int star : stars) {
+            line.append(',').append(star);
+        }
+        long image = 1_000_000_000L + random.nextLong(1_000_000_000L);
+        line.append(",https://images.gr-assets.com/books/").append(image).append('m').append('/').append(id)
+                .append(".jpg,https://images.gr-assets.com/books/").append(image).append('s').append('/').append(id)
+                .append(".jpg");
+    }
+
+    /**
+     * @return число пользователей, поставивших оценки (id с 1 подряд)
+     */
+    public long writeRatings(Path path, long books, long count) throws IOException {
+        long[] picked = new long[MAX_RATINGS_PER_USER];
+        long userId = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("book_id,user_id,rating\n");
+            StringBuilder line = new StringBuilder(32);
+            long written = 0;
+            while (written < count) {
+                userId++;
+                int ratings = (int) Math.min(1 + random.nextInt(MAX_RATINGS_PER_USER), count - written);
+                ratings = (int) Math.min(ratings, books);
+                for (int i = 0; i < ratings; i++) {
+                    long bookId = popularBook(books, picked, i);
+                    picked[i] = bookId;
+                    line.setLength(0);
+                    line.append(bookId).append(',').append(userId).append(',')
+                            .append(1 + random.nextInt(5)).append('\n');
+                    out.append(line);
+                }
+                written += ratings;
+            }
+        }
+        return userId;
+    }
+
+    /**
+     * Книга со смещением к меньшим id, которую пользователь ещё не оценил
+     */
+    private long popularBook(long books, long[] picked, int pickedCount) {
+        while (true) {
+            double skew = random.nextDouble();
+            long bookId = 1 + (long) (books * skew * skew * skew);
+            boolean repeated = false;
+            for (int i = 0; i < pickedCount && !repeated; i++) {
+                repeated = picked[i] == bookId;
+            }
+            if (!repeated) {
+                return bookId;
+            }
+        }
+    }
+
+    private String title() {
+        int words = 1 + random.nextInt(4);
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                title.append(' ');
+            }
+            title.append(i == 0 && random.nextBoolean() ? "The " : "").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return title.toString();
+    }
+
+    private String author() {
+        return NAMES[random.nextInt(NAMES.length)] + ' ' + SURNAMES[random.nextInt(SURNAMES.length)];
+    }
+
+    private static void quoted(StringBuilder line, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            line.append(value);
+            return;
+        }
+        line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
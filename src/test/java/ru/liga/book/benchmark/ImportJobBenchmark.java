@@ -0,0 +1,235 @@
+package ru.liga.book.benchmark;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.liga.book.batch.CsvFiles;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Полный прогон importJob на файлах {@link ImportDatasetGenerator} для каждого сочетания режима загрузки
+ * и числа партиций. Для каждого шага печатает прочитанные/записанные строки, время, строки в секунду
+ * и время в базе, для прогона - пиковый heap. Результаты дописываются в target/import-benchmark.csv,
+ * чтобы сравнивать прогоны между коммитами.
+ * <p>
+ * Нужен локальный Postgres (docker compose up -d db); схема пересоздаётся перед каждым прогоном.
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=ru.liga.book.benchmark.ImportJobBenchmark -Dexec.args="target/dataset" \
+ *     -Dbenchmark.modes=jdbc,copy -Dbenchmark.partitions=1,4
+ * </pre>
+ * Время в базе считается через datasource-proxy по SQL, выполненному в потоке шага (включая
+ * обновления JobRepository). Поток COPY идёт в обход прокси и в него не попадает.
+ */
+public class ImportJobBenchmark {
+
+    private static final Path RESULTS = Path.of("target", "import-benchmark.csv");
+
+    private static final String RESULTS_HEADER = "timestamp,load_mode,partitions,books,ratings,step,"
+            + "read,written,seconds,rows_per_sec,db_ms,peak_heap_mb";
+
+    private static final String OUTSIDE_STEPS = "(job)";
+
+    public static void main(String[] args) throws Exception {
+        Path dataset = Path.of(args.length > 0 ? args[0] : "target/dataset");
+        Path books = dataset.resolve(ImportDatasetGenerator.BOOKS_FILE);
+        Path ratings = dataset.resolve(ImportDatasetGenerator.RATINGS_FILE);
+        if (!Files.isRegularFile(books) || !Files.isRegularFile(ratings)) {
+            System.err.println("No dataset in " + dataset.toAbsolutePath() + ", run ImportDatasetGenerator first");
+            System.exit(1);
+        }
+        for (String mode : System.getProperty("benchmark.modes", "jdbc,copy").split(",")) {
+            for (String partitions : System.getProperty("benchmark.partitions", "1").split(",")) {
+                run(books, ratings, mode.trim(), Integer.parseInt(partitions.trim()));
+            }
+        }
+    }
+
+    private static void run(Path books, Path ratings, String mode, int partitions) throws Exception {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.file.book-input", books.toString());
+        properties.put("spring.file.review-input", ratings.toString());
+        properties.put("spring.file.load-mode", mode);
+        properties.put("spring.file.partitions", partitions);
+        properties.put("spring.liquibase.drop-first", true);
+
+        try (ConfigurableApplicationContext context = BenchmarkContext.run(properties, StepDbTimeListener.class)) {
+            JobLauncher jobLauncher = context.getBean("jobLauncher", JobLauncher.class);
+            Job importJob = context.getBean("importJob", Job.class);
+            StepDbTimeListener dbTime = context.getBean(StepDbTimeListener.class);
+
+            System.gc();
+            HeapSampler heap = new HeapSampler();
+            heap.start();
+            JobExecution execution;
+            try {
+                execution = jobLauncher.run(importJob, new JobParametersBuilder()
+                        .addLong("time", System.currentTimeMillis())
+                        .toJobParameters());
+            } finally {
+                heap.interrupt();
+                heap.join();
+            }
+            report(execution, mode, partitions, dataRows(books), dataRows(ratings), dbTime.millisByStep(),
+                    heap.peakBytes());
+        }
+    }
+
+    private static void report(JobExecution execution, String mode, int partitions, long bookRows,
+                               long ratingRows, Map<String, Long> dbMillis, long peakHeap) throws IOException {
+        Map<String, StepTotals> steps = new LinkedHashMap<>();
+        execution.getStepExecutions().stream()
+                .sorted(Comparator.comparing(StepExecution::getId))
+                .forEach(step -> steps.computeIfAbsent(stepGroup(step.getStepName()), StepTotals::new).add(step));
+
+        double peakHeapMb = peakHeap / (1024.0 * 1024.0);
+        System.out.printf(Locale.ROOT, "%nimportJob %s, load-mode=%s, partitions=%d, peak heap %.0f MB%n",
+                execution.getStatus(), mode, partitions, peakHeapMb);
+        System.out.printf(Locale.ROOT, "%-24s %12s %12s %9s %12s %10s%n",
+                "step", "read", "written", "seconds", "rows/sec", "db ms");
+
+        boolean newFile = !Files.exists(RESULTS);
+        Files.createDirectories(RESULTS.getParent());
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(RESULTS, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            if (newFile) {
+                out.println(RESULTS_HEADER);
+            }
+            String prefix = String.format(Locale.ROOT, "%s,%s,%d,%d,%d", LocalDateTime.now(), mode, partitions,
+                    bookRows, ratingRows);
+            for (StepTotals step : steps.values()) {
+                long db = dbMillis.getOrDefault(step.name, 0L);
+                System.out.printf(Locale.ROOT, "%-24s %12d %12d %9.1f %12.0f %10d%n",
+                        step.name, step.read, step.written, step.seconds(), step.rowsPerSecond(), db);
+                out.printf(Locale.ROOT, "%s,%s,%d,%d,%.3f,%.1f,%d,%.1f%n", prefix, step.name, step.read,
+                        step.written, step.seconds(), step.rowsPerSecond(), db, peakHeapMb);
+            }
+        }
+    }
+
+    private static long dataRows(Path file) {
+        return CsvFiles.countLines(file) - 1;
+    }
+
+    /**
+     * Партиции (bookWorkerStep:partition3) суммируются в одну строку отчёта
+     */
+    private static String stepGroup(String stepName) {
+        int partition = stepName.indexOf(':');
+        return partition < 0 ? stepName : stepName.substring(0, partition);
+    }
+
+    private static final class StepTotals {
+
+        private final String name;
+        private long read;
+        private long written;
+        private LocalDateTime start;
+        private LocalDateTime end;
+
+        StepTotals(String name) {
+            this.name = name;
+        }
+
+        void add(StepExecution step) {
+            read += step.getReadCount();
+            written += step.getWriteCount();
+            if (step.getStartTime() != null && (start == null || step.getStartTime().isBefore(start))) {
+                start = step.getStartTime();
+            }
+            if (step.getEndTime() != null && (end == null || step.getEndTime().isAfter(end))) {
+                end = step.getEndTime();
+            }
+        }
+
+        double seconds() {
+            return start == null || end == null ? 0 : Duration.between(start, end).toMillis() / 1000.0;
+        }
+
+        double rowsPerSecond() {
+            return read / Math.max(seconds(), 0.001);
+        }
+    }
+
+    /**
+     * Суммирует время выполнения SQL по шагу, в потоке которого выполнялся запрос
+     */
+    public static class StepDbTimeListener implements QueryExecutionListener {
+
+        private final Map<String, LongAdder> millis = new ConcurrentHashMap<>();
+
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        }
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            StepContext context = StepSynchronizationManager.getContext();
+            String step = context == null ? OUTSIDE_STEPS : stepGroup(context.getStepName());
+            millis.computeIfAbsent(step, key -> new LongAdder()).add(execInfo.getElapsedTime());
+        }
+
+        Map<String, Long> millisByStep() {
+            Map<String, Long> result = new HashMap<>();
+            millis.forEach((step, total) -> result.put(step, total.sum()));
+            return result;
+        }
+    }
+
+    /**
+     * Пиковый занятый heap за прогон; опрос раз в 10 мс, поэтому короткие всплески между опросами не видны
+     */
+    private static final class HeapSampler extends Thread {
+
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong peak = new AtomicLong();
+
+        HeapSampler() {
+            super("heap-sampler");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        long peakBytes() {
+            return peak.get();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package ru.liga.book.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.liga.book.dto.ExportFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExportResponsesTest {
+
+    @Test
+    void gzipIsAcceptedOnlyWithPositiveWeight() {
+        assertThat(ExportResponses.acceptsGzip(null)).isFalse();
+        assertThat(ExportResponses.acceptsGzip("")).isFalse();
+        assertThat(ExportResponses.acceptsGzip("identity")).isFalse();
+        assertThat(ExportResponses.acceptsGzip("gzip")).isTrue();
+        assertThat(ExportResponses.acceptsGzip("deflate, GZIP;q=0.5")).isTrue();
+        assertThat(ExportResponses.acceptsGzip("x-gzip")).isTrue();
+        assertThat(ExportResponses.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(ExportResponses.acceptsGzip("gzip; q=0.000, br")).isFalse();
+        assertThat(ExportResponses.acceptsGzip("gzip;q=oops")).isFalse();
+        assertThat(ExportResponses.acceptsGzip("gzipped")).isFalse();
+    }
+
+    @Test
+    void wildcardAppliesOnlyWhenGzipIsNotNamed() {
+        assertThat(ExportResponses.acceptsGzip("*")).isTrue();
+        assertThat(ExportResponses.acceptsGzip("*;q=0")).isFalse();
+        assertThat(ExportResponses.acceptsGzip("gzip;q=0, *")).isFalse();
+        assertThat(ExportResponses.acceptsGzip("*;q=0, gzip")).isTrue();
+    }
+
+    @Test
+    void responseVariesByAcceptEncoding() {
+        StreamingResponseBody body = out -> {
+        };
+        ResponseEntity<StreamingResponseBody> plain = ExportResponses.attachment("books", ExportFormat.CSV,
+                "gzip;q=0", gzip -> body);
+        assertThat(plain.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(plain.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+        assertThat(plain.getHeaders().getContentDisposition().getFilename()).isEqualTo("books.csv");
+
+        ResponseEntity<StreamingResponseBody> gzipped = ExportResponses.attachment("reviews", ExportFormat.NDJSON,
+                "gzip", gzip -> body);
+        assertThat(gzipped.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+    }
+}
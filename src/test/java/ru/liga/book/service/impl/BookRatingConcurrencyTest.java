@@ -0,0 +1,125 @@
+package ru.liga.book.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.liga.book.model.Book;
+import ru.liga.book.model.Review;
+import ru.liga.book.model.User;
+import ru.liga.book.repository.BookRepository;
+import ru.liga.book.repository.ReviewRepository;
+import ru.liga.book.repository.UserRepository;
+import ru.liga.book.service.BookService;
+import ru.liga.book.service.ReviewService;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.reset;
+
+/**
+ * Правка книги вперемешку с отзывами: сохранение книги, загруженной до новой оценки, не должно затирать
+ * агрегаты оценок. Отзыв добавляется в другом потоке (своей транзакцией) между загрузкой книги
+ * и её сохранением в updateBook. Схему в H2 создаёт Hibernate, Liquibase отключён.
+ */
+@DataJpaTest(properties = {"spring.liquibase.enabled=false", "spring.jpa.hibernate.ddl-auto=create-drop"})
+@Import({BookServiceImpl.class, ReviewServiceImpl.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookRatingConcurrencyTest {
+
+    private static final long ISBN13 = 9780306406157L;
+
+    @SpyBean
+    private BookRepository bookRepository;
+
+    @MockBean
+    private BookSuggestionIndex bookSuggestionIndex;
+
+    @MockBean
+    private BookLeaderboard bookLeaderboard;
+
+    @MockBean
+    private BookFacetIndex bookFacetIndex;
+
+    @MockBean
+    private BookCardCache bookCardCache;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        reset(bookRepository);
+        reviewRepository.deleteAll();
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void reviewAddedDuringBookUpdateIsNotLost() {
+        Book book = bookService.saveBook(Book.builder().title("v0").isbn13(ISBN13).ratings5(1).build());
+        User user = userRepository.save(User.builder().username("reader").password("secret").roles(Set.of()).build());
+        // проверка уникальности ISBN в updateBook идёт после загрузки книги и до её сохранения;
+        // у шпиона репозитория нельзя вызвать настоящий метод интерфейса, других книг с этим ISBN нет
+        doAnswer(invocation -> {
+            executor.submit(() -> reviewService.addReview(Review.builder().book(book).user(user).rating(5).build()))
+                    .get(10, TimeUnit.SECONDS);
+            return false;
+        }).when(bookRepository).existsByIsbn13AndIdNot(any(), anyLong());
+
+        Book update = Book.builder().title("v1").isbn13(ISBN13).build();
+        assertThatThrownBy(() -> bookService.updateBook(book.getId(), update))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertRatings(book.getId(), "v0");
+
+        reset(bookRepository);
+        bookService.updateBook(book.getId(), update);
+        assertRatings(book.getId(), "v1");
+    }
+
+    @Test
+    void bookUpdateDoesNotOverwriteRatings() {
+        Book book = bookService.saveBook(Book.builder().title("v0").ratings5(1).build());
+        User user = userRepository.save(User.builder().username("reader").password("secret").roles(Set.of()).build());
+        reviewService.addReview(Review.builder().book(book).user(user).rating(5).build());
+
+        // в теле запроса агрегаты могут прийти, но сохранение их не пишет
+        bookService.updateBook(book.getId(), Book.builder().title("v1").ratingCount(0).ratings5(0).build());
+        assertRatings(book.getId(), "v1");
+    }
+
+    private void assertRatings(Long id, String title) {
+        Book stored = bookRepository.findById(id).orElseThrow();
+        assertThat(stored.getTitle()).isEqualTo(title);
+        assertThat(stored.getRatingCount()).isEqualTo(2);
+        assertThat(stored.getRatingSum()).isEqualTo(10L);
+        assertThat(stored.getRatings5()).isEqualTo(2);
+        assertThat(stored.getRatingAvg()).isEqualTo(5.0);
+    }
+}
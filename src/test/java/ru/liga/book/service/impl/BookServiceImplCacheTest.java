@@ -0,0 +1,133 @@
+package ru.liga.book.service.impl;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepeatedTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import ru.liga.book.config.CacheConfig;
+import ru.liga.book.dto.BookCard;
+import ru.liga.book.model.Book;
+import ru.liga.book.repository.BookRepository;
+import ru.liga.book.repository.ReviewRepository;
+import ru.liga.book.service.BookService;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Кеш карточек под параллельными чтениями и обновлениями: после последнего обновления из кеша
+ * не должна читаться старая версия книги (чтение, начатое до обновления, не может положить её в кеш
+ * после удаления). База подменена моками с задержкой чтения, чтобы гонка воспроизводилась.
+ */
+@SpringJUnitConfig(BookServiceImplCacheTest.Config.class)
+class BookServiceImplCacheTest {
+
+    private static final long BOOK_ID = 1L;
+    private static final int READERS = 8;
+    private static final int UPDATES = 200;
+
+    private static final AtomicReference<Book> stored = new AtomicReference<>();
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        stored.set(Book.builder().id(BOOK_ID).title("v0").version(0L)
+                .updatedAt(Instant.EPOCH).reviewsUpdatedAt(Instant.EPOCH).build());
+        cacheManager.getCache(BookCardCache.NAME).clear();
+    }
+
+    @RepeatedTest(5)
+    void cachedCardIsNeverStaleAfterConcurrentUpdates() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(READERS);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch started = new CountDownLatch(READERS);
+        List<Future<?>> readers = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            readers.add(executor.submit(() -> {
+                started.countDown();
+                while (writing.get()) {
+                    bookService.findBookCard(BOOK_ID);
+                }
+            }));
+        }
+        started.await();
+        for (int i = 1; i <= UPDATES; i++) {
+            bookService.updateBook(BOOK_ID, Book.builder().title("v" + i).build());
+        }
+        writing.set(false);
+        for (Future<?> reader : readers) {
+            reader.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        BookCard card = bookService.findBookCard(BOOK_ID);
+        assertThat(card.getTitle()).isEqualTo("v" + UPDATES);
+        // ETag описывает ту карточку, что отдаётся, а не строку в базе
+        assertThat(card.getRevision().getEtag()).startsWith("\"" + UPDATES + "-");
+    }
+
+    @Configuration
+    @Import(CacheConfig.class)
+    static class Config {
+
+        @Bean
+        CacheManager cacheManager() {
+            CaffeineCacheManager cacheManager = new CaffeineCacheManager(BookCardCache.NAME);
+            cacheManager.setCaffeine(Caffeine.newBuilder().maximumSize(100));
+            return cacheManager;
+        }
+
+        @Bean
+        BookService bookService() {
+            BookRepository bookRepository = mock(BookRepository.class);
+            when(bookRepository.findById(anyLong())).thenAnswer(invocation -> {
+                Book book = copy(stored.get());
+                // медленное чтение из базы расширяет окно гонки между загрузкой и удалением из кеша
+                Thread.sleep(1);
+                return Optional.of(book);
+            });
+            when(bookRepository.save(any(Book.class))).thenAnswer(invocation -> {
+                Book book = invocation.getArgument(0);
+                book.setVersion(book.getVersion() + 1);
+                stored.set(copy(book));
+                return book;
+            });
+            ReviewRepository reviewRepository = mock(ReviewRepository.class);
+            when(reviewRepository.findSummariesByBookId(anyLong(), any())).thenReturn(Page.empty());
+            return new BookServiceImpl(bookRepository, reviewRepository, mock(BookSuggestionIndex.class),
+                    mock(BookLeaderboard.class), mock(BookFacetIndex.class));
+        }
+
+        private static Book copy(Book book) {
+            return Book.builder().id(book.getId()).title(book.getTitle()).version(book.getVersion())
+                    .updatedAt(book.getUpdatedAt()).reviewsUpdatedAt(book.getReviewsUpdatedAt()).build();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ru.liga.book.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IsbnTest {
+
+    private static final long HUNGER_GAMES = 9780439023481L;
+
+    @Test
+    void normalizesIsbn10() {
+        assertThat(Isbn.normalize10("0-439-02348-3")).isEqualTo("0439023483");
+        assertThat(Isbn.normalize10("439023483")).isEqualTo("0439023483");
+        assertThat(Isbn.normalize10("080442957x")).isEqualTo("080442957X");
+        assertThat(Isbn.normalize10("0439023484")).isNull();
+        assertThat(Isbn.normalize10("04390X2348")).isNull();
+        assertThat(Isbn.normalize10("04390234831")).isNull();
+        assertThat(Isbn.normalize10(" - ")).isNull();
+        assertThat(Isbn.normalize10(null)).isNull();
+    }
+
+    @Test
+    void parsesIsbn13FromAnyNotation() {
+        assertThat(Isbn.toIsbn13("978-0-439-02348-1")).isEqualTo(HUNGER_GAMES);
+        assertThat(Isbn.toIsbn13("9780439023481")).isEqualTo(HUNGER_GAMES);
+        assertThat(Isbn.toIsbn13("9.780439023481e+12")).isEqualTo(HUNGER_GAMES);
+        assertThat(Isbn.toIsbn13("0439023483")).isEqualTo(HUNGER_GAMES);
+        assertThat(Isbn.toIsbn13("439023483")).isEqualTo(HUNGER_GAMES);
+    }
+
+    @Test
+    void rejectsLossyOrInvalidIsbn13() {
+        // двенадцать значащих цифр: последняя потеряна при выгрузке числом
+        assertThat(Isbn.toIsbn13("9.78043902348e+12")).isNull();
+        assertThat(Isbn.toIsbn13("9780439023482")).isNull();
+        assertThat(Isbn.toIsbn13("1234567890123")).isNull();
+        assertThat(Isbn.toIsbn13("97804390234810")).isNull();
+        assertThat(Isbn.toIsbn13("9780439023481.5")).isNull();
+        assertThat(Isbn.toIsbn13("nan")).isNull();
+        assertThat(Isbn.toIsbn13("")).isNull();
+        assertThat(Isbn.toIsbn13(null)).isNull();
+    }
+
+    @Test
+    void convertsBetweenIsbn10AndIsbn13() {
+        assertThat(Isbn.fromIsbn10("0439023483")).isEqualTo(HUNGER_GAMES);
+        assertThat(Isbn.toIsbn10(HUNGER_GAMES)).isEqualTo("0439023483");
+        assertThat(Isbn.toIsbn10(Isbn.fromIsbn10("080442957X"))).isEqualTo("080442957X");
+        assertThat(Isbn.toIsbn10(9791032305690L)).isNull();
+    }
+
+    @Test
+    void everyIsbn10RoundTripsThroughIsbn13() {
+        for (long body = 0; body < 1_000_000_000L; body += 999_983) {
+            String isbn10 = Isbn.normalize10(withCheckDigit(body));
+            assertThat(isbn10).isNotNull();
+            long isbn13 = Isbn.fromIsbn10(isbn10);
+            assertThat(Isbn.isValid13(isbn13)).isTrue();
+            assertThat(Isbn.toIsbn13(Long.toString(isbn13))).isEqualTo(isbn13);
+            assertThat(Isbn.toIsbn10(isbn13)).isEqualTo(isbn10);
+        }
+    }
+
+    private static String withCheckDigit(long body) {
+        String digits = String.format("%09d", body);
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            sum += (10 - i) * (digits.charAt(i) - '0');
+        }
+        int check = (11 - sum % 11) % 11;
+        return digits + (check == 10 ? "X" : String.valueOf(check));
+    }
+}
@@ -0,0 +1,52 @@
+package ru.liga.book.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LongHashSetTest {
+
+    @Test
+    void matchesHashSetThroughResizes() {
+        SplittableRandom random = new SplittableRandom(42);
+        LongHashSet set = new LongHashSet(4);
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            // узкий диапазон - много повторов, отрицательные и 0 тоже попадают
+            long key = random.nextLong(-50_000, 50_000);
+            assertThat(set.add(key)).isEqualTo(expected.add(key));
+        }
+        assertThat(set.size()).isEqualTo(expected.size());
+        for (long key = -60_000; key < 60_000; key++) {
+            assertThat(set.contains(key)).isEqualTo(expected.contains(key));
+        }
+        Set<Long> iterated = new HashSet<>();
+        set.forEach(key -> assertThat(iterated.add(key)).isTrue());
+        assertThat(iterated).isEqualTo(expected);
+    }
+
+    @Test
+    void zeroIsAnOrdinaryKey() {
+        LongHashSet set = new LongHashSet();
+        assertThat(set.isEmpty()).isTrue();
+        assertThat(set.contains(0)).isFalse();
+        assertThat(set.add(0)).isTrue();
+        assertThat(set.add(0)).isFalse();
+        assertThat(set.contains(0)).isTrue();
+        assertThat(set.size()).isEqualTo(1);
+    }
+
+    @Test
+    void capacityIsAPowerOfTwoAboveTheLoadFactor() {
+        assertThat(LongHashSet.capacityFor(0)).isEqualTo(2);
+        assertThat(LongHashSet.capacityFor(6)).isEqualTo(16);
+        assertThat(LongHashSet.capacityFor(10)).isEqualTo(32);
+        assertThatThrownBy(() -> LongHashSet.capacityFor(Integer.MAX_VALUE))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
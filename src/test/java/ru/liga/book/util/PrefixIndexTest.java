@@ -0,0 +1,104 @@
+package ru.liga.book.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrefixIndexTest {
+
+    private static final int TOP_K = 10;
+
+    @Test
+    void normalizesKeysAndQueries() {
+        assertThat(PrefixIndex.normalize("  Harry\t Potter  ")).isEqualTo("harry potter");
+        assertThat(PrefixIndex.normalize(null)).isEmpty();
+        assertThat(PrefixIndex.normalize("x".repeat(100))).hasSize(64);
+    }
+
+    @Test
+    void findsPrefixesByWeight() {
+        PrefixIndex index = PrefixIndex.builder()
+                .add("Harry Potter", 1, 100)
+                .add("J.K. Rowling", 1, 100)
+                .add("Harriet", 2, 300)
+                .add("Hunger Games", 3, 200)
+                .add("Гарри Поттер", 4, 50)
+                .add("   ", 5, 1000)
+                .build(TOP_K, 1);
+        assertThat(ids(index.search("har", TOP_K))).containsExactly(2L, 1L);
+        assertThat(ids(index.search("H", TOP_K))).containsExactly(2L, 3L, 1L);
+        assertThat(ids(index.search("гар", TOP_K))).containsExactly(4L);
+        assertThat(ids(index.search("harry potter and", TOP_K))).isEmpty();
+        assertThat(ids(index.search("", TOP_K))).containsExactly(2L, 3L, 1L, 4L);
+        assertThat(index.size()).isEqualTo(5);
+    }
+
+    /**
+     * Маленький алфавит и низкий порог: большинство запросов идёт через заранее посчитанные тяжёлые префиксы
+     */
+    @Test
+    void matchesBruteForce() {
+        SplittableRandom random = new SplittableRandom(7);
+        List<String> keys = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        PrefixIndex.Builder builder = PrefixIndex.builder();
+        for (int i = 0; i < 5_000; i++) {
+            String key = randomKey(random, 1 + random.nextInt(8));
+            long id = random.nextInt(3_000);
+            // разные веса: порядок равных весов в индексе не определён
+            int weight = i;
+            builder.add(key, id, weight);
+            keys.add(key);
+            ids.add(id);
+            weights.add(weight);
+        }
+        PrefixIndex index = builder.build(TOP_K, 16);
+        for (int length = 0; length <= 4; length++) {
+            for (int q = 0; q < 200; q++) {
+                String prefix = randomKey(random, length);
+                List<Long> expected = bruteForce(keys, ids, weights, prefix, TOP_K);
+                assertThat(ids(index.search(prefix, TOP_K))).as("prefix '%s'", prefix).isEqualTo(expected);
+                // больше topK: мимо заранее посчитанных префиксов, просмотром диапазона
+                assertThat(ids(index.search(prefix, TOP_K * 3))).as("prefix '%s' over topK", prefix)
+                        .isEqualTo(bruteForce(keys, ids, weights, prefix, TOP_K * 3));
+            }
+        }
+    }
+
+    private static List<Long> bruteForce(List<String> keys, List<Long> ids, List<Integer> weights, String prefix,
+                                         int limit) {
+        List<Integer> matches = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (keys.get(i).startsWith(prefix)) {
+                matches.add(i);
+            }
+        }
+        matches.sort(Comparator.comparing(weights::get).reversed());
+        Set<Long> result = new LinkedHashSet<>();
+        // индекс берёт limit лучших позиций и убирает повторы id среди них
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            result.add(ids.get(matches.get(i)));
+        }
+        return new ArrayList<>(result);
+    }
+
+    private static String randomKey(SplittableRandom random, int length) {
+        StringBuilder key = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            key.append("abcй".charAt(random.nextInt(4)));
+        }
+        return key.toString();
+    }
+
+    private static List<Long> ids(List<PrefixIndex.Hit> hits) {
+        return hits.stream().map(PrefixIndex.Hit::id).toList();
+    }
+}
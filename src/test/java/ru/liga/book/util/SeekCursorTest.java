@@ -0,0 +1,46 @@
+package ru.liga.book.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SeekCursorTest {
+
+    @Test
+    void roundTripsIdAndValue() {
+        String cursor = SeekCursor.encode("title", 42, "Harry Potter, vol. 1 / Гарри");
+        assertThat(cursor).doesNotContain("=", "+", "/");
+        assertThat(SeekCursor.decode(cursor, "title")).isEqualTo(new SeekCursor(42, "Harry Potter, vol. 1 / Гарри"));
+    }
+
+    @Test
+    void keepsEmptyAndMissingValuesApart() {
+        assertThat(SeekCursor.decode(SeekCursor.encode("title", 7, ""), "title")).isEqualTo(new SeekCursor(7, ""));
+        assertThat(SeekCursor.decode(SeekCursor.encode("title", 7, null), "title")).isEqualTo(new SeekCursor(7, null));
+    }
+
+    @Test
+    void rejectsCursorOfAnotherSort() {
+        String cursor = SeekCursor.encode("rating", 1, "4.5");
+        assertThatThrownBy(() -> SeekCursor.decode(cursor, "title"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(cursor);
+    }
+
+    @Test
+    void rejectsDamagedCursor() {
+        assertThatThrownBy(() -> SeekCursor.decode("***", "id")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SeekCursor.decode(encodeRaw("id\u001fabc"), "id"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SeekCursor.decode(encodeRaw("id"), "id"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String encodeRaw(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}